@@ -1,16 +1,18 @@
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.ListIterator;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Scanner;
-import java.util.ArrayList;
 import java.util.Comparator;
 
 /**
@@ -21,7 +23,6 @@ public class AdminView {
 
     private static final String DOCTOR_CSV = "doctors_clean.csv"; // PADRONIZAÇÃO: arquivo único para médicos
     private static final String PATIENT_CSV = "patients.csv";
-    private static final String APPOINTMENT_CSV = "appointments.csv";
 
     /**
      * Exibe as opções de autenticação para o administrador
@@ -95,6 +96,7 @@ public class AdminView {
         int option = 1;
         while (option != 0) {
             try {
+                DataWatcher.sync();
                 System.out.println("\nInterface de Administrador");
                 System.out.println("0 - Voltar ao Menu Principal");
                 System.out.println("1 - Gerenciar Médicos");
@@ -106,9 +108,11 @@ public class AdminView {
                     case 0: break;
                     case 1: manageDoctors(doctors, scanner); break;
                     case 2:
-                        managePatients(patients, scanner);
-                        appointments.clear();
-                        appointments.addAll(Appointment.loadFromCSV(APPOINTMENT_CSV));
+                        managePatients(patients, appointments, scanner);
+                        // As alterações desta tela já estão em memória; só uma releitura completa exige reassociar
+                        if (AppointmentStore.refreshIfChanged(appointments)) {
+                            Main.associateAppointmentsToPatients(patients, appointments);
+                        }
                         break;
                     case 3: manageAppointments(appointments, patients, scanner); break;
                     default: System.out.println("Opção inválida."); break;
@@ -125,6 +129,7 @@ public class AdminView {
         System.out.println("3 - Corrigir Médico");
         System.out.println("4 - Ver Médicos Cadastrados");
         System.out.println("5 - Reintegrar Médico");
+        System.out.println("6 - Relatório de Pacientes sem Consulta Recente");
         System.out.println("0 - Voltar");
         int option = scanner.nextInt();
         scanner.nextLine();
@@ -135,6 +140,7 @@ public class AdminView {
             case 3: editDoctor(doctors, scanner); doctorsUpdated = true; break;
             case 4: listDoctors(doctors); break;
             case 5: reintegrateDoctor(doctors, scanner); break;
+            case 6: inactivePatientsReport(scanner); break;
             case 0: return;
             default: System.out.println("Opção inválida.");
         }
@@ -158,6 +164,7 @@ public class AdminView {
         String doctorCode = scanner.nextLine();
 
         saveToCSV(DOCTOR_CSV, doctorName, doctorCode);
+        DoctorRegistry.invalidate();
     }
 
     private static void deleteDoctor(List<Doctor> doctors, Scanner scanner) {
@@ -176,12 +183,10 @@ public class AdminView {
         }
 
         if (found) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(DOCTOR_CSV))) {
-                writer.println("Nome,CRM");
-                for (Doctor d : doctors) {
-                    writer.println(d.getName() + "," + d.getCode());
-                }
+            try {
+                saveDoctors(doctors);
                 System.out.println("Médico marcado como removido com sucesso!");
+                DoctorRegistry.invalidate();
             } catch (IOException e) {
                 System.out.println("Erro ao salvar o arquivo: " + e.getMessage());
             }
@@ -206,12 +211,10 @@ public class AdminView {
         }
 
         if (found) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(DOCTOR_CSV))) {
-                writer.println("Nome,CRM");
-                for (Doctor d : doctors) {
-                    writer.println(d.getName() + "," + d.getCode());
-                }
+            try {
+                saveDoctors(doctors);
                 System.out.println("Dados do médico atualizados com sucesso!");
+                DoctorRegistry.invalidate();
             } catch (IOException e) {
                 System.out.println("Erro ao salvar o arquivo: " + e.getMessage());
             }
@@ -220,6 +223,48 @@ public class AdminView {
         }
     }
 
+    /**
+     * Exibe, para todos os médicos de uma vez, os pacientes sem consulta há mais que um determinado tempo
+     *
+     * @param scanner Scanner para leitura de entrada do usuário
+     */
+    private static void inactivePatientsReport(Scanner scanner) {
+        System.out.print("Informe o número de meses: ");
+        int months;
+        try {
+            months = Integer.parseInt(scanner.nextLine().trim());
+            if (months <= 0) {
+                System.out.println("Por favor, digite um número positivo de meses.");
+                return;
+            }
+        } catch (NumberFormatException e) {
+            System.out.println("Entrada inválida. Digite um número inteiro.");
+            return;
+        }
+
+        LocalDate cutoffDate = AppointmentClock.today().minusMonths(months);
+        Map<String, List<LastVisitTracker.Entry>> report = LastVisitTracker.inactiveSinceByDoctor(cutoffDate);
+
+        if (report.isEmpty()) {
+            System.out.println("Todos os pacientes tiveram consultas nos últimos " + months + " meses.");
+            return;
+        }
+
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        System.out.println("\nPacientes sem consulta há mais de " + months + " meses, por médico:");
+        for (Map.Entry<String, List<LastVisitTracker.Entry>> doctor : report.entrySet()) {
+            System.out.println("\n" + DoctorView.getDoctorName(doctor.getKey()) + " (CRM: " + doctor.getKey() + ") - "
+                    + doctor.getValue().size() + " paciente(s)");
+
+            for (LastVisitTracker.Entry entry : doctor.getValue()) {
+                Patient patient = PatientIndex.get(entry.getPatientCPF());
+                String name = patient != null ? patient.getName() : "Paciente não cadastrado";
+                String lastDate = entry.getLastVisit() != null ? entry.getLastVisit().format(formatter) : "Nunca consultou";
+                System.out.println("- " + name + " (CPF: " + UIUtils.formatCPF(entry.getPatientCPF()) + ") | Última consulta: " + lastDate);
+            }
+        }
+    }
+
     private static void listDoctors(List<Doctor> doctors) {
         if (doctors.isEmpty()) {
             System.out.println("\nNenhum médico cadastrado.");
@@ -229,11 +274,13 @@ public class AdminView {
         // Ordenar alfabeticamente por nome
         doctors.sort(Comparator.comparing(Doctor::getName));
 
-        System.out.println("\nLista de médicos cadastrados:");
+        TableRenderer table = new TableRenderer("Nº", "Nome", "CRM").alignRight(0);
+        table.line("\nLista de médicos cadastrados:");
         int index = 1;
         for (Doctor d : doctors) {
-            System.out.println(index++ + " - Nome: " + d.getName() + " | CRM: " + d.getCode());
+            table.row(index++, d.getName(), d.getCode());
         }
+        table.flush();
     }
 
     private static void reintegrateDoctor(List<Doctor> doctors, Scanner scanner) {
@@ -250,12 +297,10 @@ public class AdminView {
         }
 
         if (found) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(DOCTOR_CSV))) {
-                writer.println("Nome,CRM");
-                for (Doctor d : doctors) {
-                    writer.println(d.getName() + "," + d.getCode());
-                }
+            try {
+                saveDoctors(doctors);
                 System.out.println("Médico reintegrado com sucesso!");
+                DoctorRegistry.invalidate();
             } catch (IOException e) {
                 System.out.println("Erro ao salvar o arquivo: " + e.getMessage());
             }
@@ -265,36 +310,31 @@ public class AdminView {
     }
 
 
-    private static void managePatients(List<Patient> patients, Scanner scanner) {
+    private static void managePatients(List<Patient> patients, List<Appointment> appointments, Scanner scanner) {
         System.out.println("\n1 - Cadastrar Paciente");
         System.out.println("2 - Excluir Paciente");
         System.out.println("3 - Corrigir Paciente");
         System.out.println("0 - Voltar");
         int option = scanner.nextInt();
         scanner.nextLine();
-        boolean patientEdited = false;
+        // Cada opção corrige a lista e o PatientIndex no lugar; o que outro processo gravar chega por DataWatcher.sync
         switch (option) {
-            case 1: registerPatient(scanner); break;
+            case 1: registerPatient(patients, appointments, scanner); break;
             case 2: deletePatient(patients, scanner); break;
-            case 3: editPatient(patients, scanner); patientEdited = true; break;
+            case 3: editPatient(patients, scanner); break;
             case 0: return;
             default: System.out.println("Opção inválida.");
         }
-
-        if(patientEdited) {
-            patients.clear();
-            patients.addAll(Patient.loadFromCSV(PATIENT_CSV));
-        } else {
-            updatePatientsFromCSV(patients, PATIENT_CSV);
-        }
     }
 
     /**
      * Cadastra um novo paciente no sistema
      *
+     * @param patients Lista de pacientes
+     * @param appointments Lista de todas as consultas
      * @param scanner Scanner para leitura de entrada do usuário
      */
-    private static void registerPatient(Scanner scanner) {
+    private static void registerPatient(List<Patient> patients, List<Appointment> appointments, Scanner scanner) {
         System.out.println("Digite o nome do paciente: ");
         String patientName = scanner.nextLine();
         System.out.println("Digite o CPF do paciente: ");
@@ -307,8 +347,20 @@ public class AdminView {
 
         saveToCSV(PATIENT_CSV, patientName, patientCPF);
 
-        Patient newPatient = new Patient(patientName, patientCPF);
-        offerScheduleAppointment(newPatient, scanner);
+        // Entra na lista e no índice antes do agendamento, para que a consulta seja associada a ele
+        Patient existing = PatientIndex.get(patientCPF);
+        Patient newPatient = existing == null
+                ? new Patient(patientName, patientCPF)
+                : new Patient(patientName, patientCPF, existing.getAppointmentList());
+        int position = existing == null ? -1 : patients.indexOf(existing);
+        if (position >= 0) {
+            patients.set(position, newPatient);
+        } else {
+            patients.add(newPatient);
+        }
+        PatientIndex.put(newPatient);
+
+        offerScheduleAppointment(newPatient, appointments, scanner);
     }
 
 
@@ -318,11 +370,9 @@ public class AdminView {
 
         boolean removed = patients.removeIf(p -> p.getCpf().equals(cpf));
         if (removed) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(PATIENT_CSV))) {
-                writer.println("Nome,CPF");
-                for (Patient p : patients) {
-                    writer.println(p.getName() + "," + p.getCpf());
-                }
+            PatientIndex.remove(cpf);
+            try {
+                savePatients(patients);
                 System.out.println("Paciente removido com sucesso!");
             } catch (IOException e) {
                 System.out.println("Erro ao salvar o arquivo: " + e.getMessage());
@@ -341,18 +391,17 @@ public class AdminView {
             if (p.getCpf().equals(cpf)) {
                 System.out.print("Digite o novo nome do paciente: ");
                 String newName = scanner.nextLine().trim();
-                patients.set(patients.indexOf(p), new Patient(newName, cpf));
+                Patient edited = new Patient(newName, cpf, p.getAppointmentList());
+                patients.set(patients.indexOf(p), edited);
+                PatientIndex.put(edited);
                 found = true;
                 break;
             }
         }
 
         if (found) {
-            try (PrintWriter writer = new PrintWriter(new FileWriter(PATIENT_CSV))) {
-                writer.println("Nome,CPF");
-                for (Patient p : patients) {
-                    writer.println(p.getName() + "," + p.getCpf());
-                }
+            try {
+                savePatients(patients);
                 System.out.println("Dados do paciente atualizados com sucesso!");
             } catch (IOException e) {
                 System.out.println("Erro ao salvar o arquivo: " + e.getMessage());
@@ -366,14 +415,15 @@ public class AdminView {
      * Oferece a opção de agendar uma consulta após o cadastro de um paciente
      *
      * @param patient Paciente recém-cadastrado
+     * @param appointments Lista de todas as consultas
      * @param scanner Scanner para leitura de entrada do usuário
      */
-    private static void offerScheduleAppointment(Patient patient, Scanner scanner) {
+    private static void offerScheduleAppointment(Patient patient, List<Appointment> appointments, Scanner scanner) {
         System.out.println("\nDeseja agendar uma consulta para este paciente? (s/n): ");
         String response = scanner.nextLine();
 
         if (response.equalsIgnoreCase("s")) {
-            scheduleAppointment(patient, scanner);
+            scheduleAppointment(patient, appointments, scanner);
         }
     }
 
@@ -381,11 +431,12 @@ public class AdminView {
      * Agenda uma nova consulta para um paciente
      *
      * @param patient Paciente para o qual a consulta será agendada
+     * @param allAppointments Lista de todas as consultas
      * @param scanner Scanner para leitura de entrada do usuário
      */
-    private static void scheduleAppointment(Patient patient, Scanner scanner) {
+    private static void scheduleAppointment(Patient patient, List<Appointment> allAppointments, Scanner scanner) {
         try {
-            List<Doctor> doctors = Doctor.loadFromCSV(DOCTOR_CSV);
+            List<Doctor> doctors = DoctorRegistry.getDoctors();
 
             if (doctors.isEmpty()) {
                 System.out.println("Não há médicos cadastrados. Cadastre um médico primeiro.");
@@ -406,6 +457,9 @@ public class AdminView {
                 return;
             }
 
+            // Sugerir horários livres antes de pedir data e hora
+            UIUtils.showNextFreeSlots(doctors.get(doctorIndex).getCode(), 5);
+
             // Obter data da consulta
             System.out.print("Digite a data da consulta (yyyy-MM-dd): ");
             String dateStr = scanner.nextLine();
@@ -423,6 +477,12 @@ public class AdminView {
 
                 Doctor selectedDoctor = doctors.get(doctorIndex);
 
+                // Verificar se já existe consulta no mesmo horário para o médico
+                if (DoctorSchedule.isSlotTaken(selectedDoctor.getCode(), appointmentDate, appointmentTime, null)) {
+                    System.out.println("Já existe uma consulta agendada com este médico neste horário.");
+                    return;
+                }
+
                 // Criar e salvar a nova consulta
                 Appointment appointment = new Appointment(
                         appointmentDate,
@@ -432,7 +492,8 @@ public class AdminView {
                         AppointmentStatus.PENDING
                 );
 
-                appointment.saveToCSVFile(APPOINTMENT_CSV, true);
+                AppointmentStore.create(appointment, allAppointments);
+                PatientIndex.attach(appointment);
 
                 System.out.println("\nConsulta agendada com sucesso!");
                 System.out.println("Paciente: " + patient.getName());
@@ -458,8 +519,8 @@ public class AdminView {
      * @param code Código ou CPF
      */
     private static void saveToCSV(String filename, String name, String code) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename, true))) {
-            writer.println(name + "," + code);
+        try {
+            GroupCommitWriter.forFile(filename).appendAndWait(Collections.singletonList(name + "," + code));
         } catch (IOException error) {
             System.out.println("Erro ao salvar no arquivo CSV: " + error.getMessage());
         }
@@ -467,6 +528,36 @@ public class AdminView {
         System.out.println("\nCadastro efetuado com sucesso!");
     }
 
+    /**
+     * Regrava o arquivo de médicos (substituição atômica, ver {@link AtomicFile})
+     *
+     * @param doctors Lista completa de médicos
+     * @throws IOException se ocorrer erro ao gravar; o arquivo anterior fica intacto
+     */
+    private static void saveDoctors(List<Doctor> doctors) throws IOException {
+        AtomicFile.replaceLines(DOCTOR_CSV, writer -> {
+            writer.println("Nome,CRM");
+            for (Doctor d : doctors) {
+                writer.println(d.getName() + "," + d.getCode());
+            }
+        });
+    }
+
+    /**
+     * Regrava o arquivo de pacientes (substituição atômica, ver {@link AtomicFile})
+     *
+     * @param patients Lista completa de pacientes
+     * @throws IOException se ocorrer erro ao gravar; o arquivo anterior fica intacto
+     */
+    private static void savePatients(List<Patient> patients) throws IOException {
+        AtomicFile.replaceLines(PATIENT_CSV, writer -> {
+            writer.println("Nome,CPF");
+            for (Patient p : patients) {
+                writer.println(p.getName() + "," + p.getCpf());
+            }
+        });
+    }
+
     /**
      * Interface para gerenciar consultas (cancelar ou alterar)
      *
@@ -482,36 +573,25 @@ public class AdminView {
                 return;
             }
 
-            Patient patient = null;
-            for (Patient p : patients) {
-                if (p.getCpf().equals(cpf)) {
-                    patient = p;
-                    break;
-                }
-            }
+            Patient patient = PatientIndex.get(cpf);
 
             if (patient == null) {
                 System.out.println("Paciente não encontrado.");
                 return;
             }
 
-            // Filtrar consultas futuras do paciente
-            List<Appointment> futureAppointments = new ArrayList<>();
-            for (Appointment appointment : appointments) {
-                if (appointment.belongsToPatient(cpf) &&
-                        appointment.isPending()) {
-                    futureAppointments.add(appointment);
-                }
-            }
+            // Consultas futuras do paciente, ordenadas por data/hora
+            List<Appointment> futureAppointments = AppointmentQuery.over(appointments)
+                    .patient(cpf)
+                    .status(AppointmentStatus.PENDING)
+                    .orderByDateTime()
+                    .list();
 
             if (futureAppointments.isEmpty()) {
                 System.out.println("Não há consultas futuras para este paciente.");
                 return;
             }
 
-            // Ordenar por data/hora
-            futureAppointments.sort(Comparator.comparing(a -> LocalDate.parse(a.getFormattedDateTime().split(" ")[0], DateTimeFormatter.ofPattern("dd/MM/yyyy"))));
-
             System.out.println("\nConsultas futuras do paciente " + patient.getName() + ":");
             for (int i = 0; i < futureAppointments.size(); i++) {
                 Appointment app = futureAppointments.get(i);
@@ -552,8 +632,10 @@ public class AdminView {
                     System.out.println("Opção inválida.");
             }
 
-            appointments.clear();
-            appointments.addAll(Appointment.loadFromCSV(APPOINTMENT_CSV));
+            // As alterações desta tela já estão em memória; só falta o que outro processo gravou
+            if (AppointmentStore.refreshIfChanged(appointments)) {
+                Main.associateAppointmentsToPatients(patients, appointments);
+            }
         } catch (NumberFormatException e) {
             System.out.println("Entrada inválida. Digite um número.");
         } catch (Exception e) {
@@ -571,20 +653,8 @@ public class AdminView {
      */
     private static void cancelAppointment(Appointment appointment, List<Appointment> allAppointments) {
         try {
-            // Encontrar e atualizar a consulta na lista
-            for (Appointment app : allAppointments) {
-                if (app.getDate().equals(appointment.getDate()) &&
-                        app.getTime().equals(appointment.getTime()) &&
-                        app.getPatientCPF().equals(appointment.getPatientCPF()) &&
-                        app.getDoctorCRM().equals(appointment.getDoctorCRM())) {
-
-                    app.setStatus(AppointmentStatus.CANCELLED);
-                    break;
-                }
-            }
-
-            // Salvar a lista atualizada
-            Appointment.saveAppointmentsToCSV(allAppointments, APPOINTMENT_CSV);
+            // Atualizar o status na lista e registrar o cancelamento
+            AppointmentStore.cancel(appointment);
 
             System.out.println("Consulta cancelada com sucesso!");
 
@@ -618,38 +688,16 @@ public class AdminView {
             LocalDate newDate = LocalDate.parse(dateStr, dateFormatter);
             LocalTime newTime = LocalTime.parse(timeStr, timeFormatter);
 
-            // Remover a consulta antiga
-            int indexToRemove = -1;
-            for (int i = 0; i < allAppointments.size(); i++) {
-                Appointment app = allAppointments.get(i);
-                if (app.getDate().equals(appointment.getDate()) &&
-                        app.getTime().equals(appointment.getTime()) &&
-                        app.getPatientCPF().equals(appointment.getPatientCPF()) &&
-                        app.getDoctorCRM().equals(appointment.getDoctorCRM())) {
-
-                    indexToRemove = i;
-                    break;
-                }
+            // Verificar se já existe consulta no mesmo horário para o médico
+            if (DoctorSchedule.isSlotTaken(appointment.getDoctorCRM(), newDate, newTime, appointment)) {
+                System.out.println("Já existe uma consulta agendada com este médico neste horário.");
+                return;
             }
 
-            if (indexToRemove != -1) {
-                // Criar nova consulta com os mesmos dados, exceto data e hora
-                Appointment newAppointment = new Appointment(
-                        newDate,
-                        newTime,
-                        appointment.getPatientCPF(),
-                        appointment.getDoctorCRM(),
-                        AppointmentStatus.PENDING
-                );
-
-                // Substituir na lista
-                allAppointments.set(indexToRemove, newAppointment);
-
-                // Salvar a lista atualizada
-                Appointment.saveAppointmentsToCSV(allAppointments, APPOINTMENT_CSV);
-
+            // Mover a consulta para a nova data e hora, mantendo o mesmo id
+            if (AppointmentStore.reschedule(appointment, newDate, newTime)) {
                 System.out.println("Data e hora da consulta alteradas com sucesso!");
-                System.out.println("Nova data e hora: " + newAppointment.getFormattedDateTime());
+                System.out.println("Nova data e hora: " + appointment.getFormattedDateTime());
             } else {
                 System.out.println("Erro: Consulta não encontrada na lista.");
             }
@@ -663,51 +711,99 @@ public class AdminView {
     }
 
     /**
-     * Atualiza a lista de pacientes a partir do arquivo CSV
+     * Atualiza a lista de pacientes a partir do arquivo CSV.
+     * O arquivo é lido para um mapa CPF -> nome e comparado com a lista em uma única
+     * passada: pacientes novos são incluídos, nomes corrigidos são trocados e pacientes
+     * que saíram do arquivo são retirados, sempre mantendo o {@link PatientIndex} em dia.
      *
      * @param currentPatients Lista atual de pacientes
      * @param filename Nome do arquivo CSV
+     * @return Quantidade de pacientes incluídos, corrigidos ou retirados
      */
-    public static void updatePatientsFromCSV(List<Patient> currentPatients, String filename) {
-        try (Scanner scanner = new Scanner(new File(filename))) {
-            if (scanner.hasNextLine()) scanner.nextLine();
-
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
-
-                String[] parts = line.split(",");
-                if (parts.length < 2) continue;
-
-                String name = parts[0].trim();
-                String cpf = parts[1].trim();
-
-                boolean exists = false;
-                for (Patient p : currentPatients) {
-                    if (p.getCpf().equals(cpf)) {
-                        exists = true;
-                        break;
-                    }
-                }
+    public static int updatePatientsFromCSV(List<Patient> currentPatients, String filename) {
+        Map<String, String> namesByCpf = readNameColumns(filename);
+        if (namesByCpf == null) {
+            System.out.println("Erro ao atualizar lista de pacientes: arquivo não pôde ser lido");
+            return 0;
+        }
 
-                if (!exists) {
-                    currentPatients.add(new Patient(name, cpf));
-                }
+        int changes = 0;
+        ListIterator<Patient> iterator = currentPatients.listIterator();
+        while (iterator.hasNext()) {
+            Patient patient = iterator.next();
+            String name = namesByCpf.remove(patient.getCpf());
+            if (name == null) {
+                iterator.remove();
+                PatientIndex.remove(patient.getCpf());
+                changes++;
+            } else if (!name.equals(patient.getName())) {
+                Patient edited = new Patient(name, patient.getCpf(), patient.getAppointmentList());
+                iterator.set(edited);
+                PatientIndex.put(edited);
+                changes++;
             }
+        }
 
-        } catch (IOException e) {
-            System.out.println("Erro ao atualizar lista de pacientes: " + e.getMessage());
+        // O que sobrou no mapa não existia na lista
+        for (Map.Entry<String, String> entry : namesByCpf.entrySet()) {
+            Patient patient = new Patient(entry.getValue(), entry.getKey());
+            currentPatients.add(patient);
+            PatientIndex.put(patient);
+            changes++;
         }
+        return changes;
     }
 
     /**
-     * Atualiza a lista de médicos a partir do arquivo CSV
+     * Atualiza a lista de médicos a partir do arquivo CSV, da mesma forma que
+     * {@link #updatePatientsFromCSV}: inclui os novos, corrige os nomes (inclusive a
+     * marcação de removido) e retira os que saíram do arquivo.
      *
      * @param currentDoctors Lista atual de médicos
      * @param filename Nome do arquivo CSV
+     * @return Quantidade de médicos incluídos, corrigidos ou retirados
      */
-    public static void updateDoctorsFromCSV(List<Doctor> currentDoctors, String filename) {
+    public static int updateDoctorsFromCSV(List<Doctor> currentDoctors, String filename) {
         // PADRÃO CONSOLIDADO: filename deve ser doctors_clean.csv
+        Map<String, String> namesByCode = readNameColumns(filename);
+        if (namesByCode == null) {
+            System.out.println("Erro ao atualizar lista de médicos: arquivo não pôde ser lido");
+            return 0;
+        }
+
+        int changes = 0;
+        Iterator<Doctor> iterator = currentDoctors.iterator();
+        while (iterator.hasNext()) {
+            Doctor doctor = iterator.next();
+            String name = namesByCode.remove(doctor.getCode());
+            if (name == null) {
+                iterator.remove();
+                changes++;
+            } else if (!name.equals(doctor.getName())) {
+                doctor.setName(name);
+                changes++;
+            }
+        }
+
+        for (Map.Entry<String, String> entry : namesByCode.entrySet()) {
+            currentDoctors.add(new Doctor(entry.getValue(), entry.getKey()));
+            changes++;
+        }
+
+        if (changes > 0) {
+            DoctorRegistry.invalidate();
+        }
+        return changes;
+    }
+
+    /**
+     * Lê um CSV no formato "Nome,Código" (com cabeçalho)
+     *
+     * @return Mapa código -> nome na ordem do arquivo (a primeira ocorrência vale)
+     *         ou null se o arquivo não pôde ser lido
+     */
+    private static Map<String, String> readNameColumns(String filename) {
+        Map<String, String> namesByCode = new LinkedHashMap<>();
         try (Scanner scanner = new Scanner(new File(filename))) {
             if (scanner.hasNextLine()) scanner.nextLine();
 
@@ -718,24 +814,11 @@ public class AdminView {
                 String[] parts = line.split(",");
                 if (parts.length < 2) continue;
 
-                String name = parts[0].trim();
-                String code = parts[1].trim(); // código como string
-
-                boolean exists = false;
-                for (Doctor d : currentDoctors) {
-                    if (d.getCode().equals(code)) {
-                        exists = true;
-                        break;
-                    }
-                }
-
-                if (!exists) {
-                    currentDoctors.add(new Doctor(name, code));
-                }
+                namesByCode.putIfAbsent(parts[1].trim(), parts[0].trim());
             }
-
         } catch (IOException e) {
-            System.out.println("Erro ao atualizar lista de médicos: " + e.getMessage());
+            return null;
         }
+        return namesByCode;
     }
 }
\ No newline at end of file
@@ -3,26 +3,23 @@ import java.time.LocalTime;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 import java.util.*;
 
 /**
  * Classe que representa uma consulta médica no sistema.
  * Gerencia dados como data, hora, paciente e médico, além de
  * oferecer funcionalidades para filtrar e gerenciar consultas.
+ * Os campos ficam guardados em uma linha de {@link AppointmentTable};
+ * o objeto é apenas uma visão dessa linha.
  */
 public class Appointment {
-    private final LocalDate date;
-    private final LocalTime time;
-    private final String patientCPF;
-    private final String doctorCRM;
-    private AppointmentStatus status;
+    private AppointmentTable table;
+    private int row;
+
+    /** Cabeçalho do arquivo CSV de consultas */
+    static final String CSV_HEADER = "Data,Horario,CPF_Paciente,CRM_Medico,Status,Id";
 
-    private static final String APPOINTMENT_CSV = "appointments.csv";
-    private static final String DOCTOR_CSV = "doctors_clean.csv";
 
     /**
      * Construtor para criação de uma nova consulta
@@ -33,14 +30,11 @@ public class Appointment {
      * @param doctorCRM CRM do médico
      */
     public Appointment(LocalDate date, LocalTime time, String patientCPF, String doctorCRM) {
-        this.date = date;
-        this.time = time;
-        this.patientCPF = patientCPF;
-        this.doctorCRM = doctorCRM;
         // Define o status inicial com base na data e hora
-        this.status = LocalDateTime.of(date, time).isBefore(LocalDateTime.now())
-                ? AppointmentStatus.COMPLETED
-                : AppointmentStatus.PENDING;
+        this(date, time, patientCPF, doctorCRM,
+                LocalDateTime.of(date, time).isBefore(AppointmentClock.now())
+                        ? AppointmentStatus.COMPLETED
+                        : AppointmentStatus.PENDING);
     }
 
     /**
@@ -51,13 +45,29 @@ public class Appointment {
      * @param patientCPF CPF do paciente
      * @param doctorCRM CRM do médico
      * @param status Status da consulta
+     * @throws IllegalArgumentException se o CPF não tiver 11 dígitos
      */
     public Appointment(LocalDate date, LocalTime time, String patientCPF, String doctorCRM, AppointmentStatus status) {
-        this.date = date;
-        this.time = time;
-        this.patientCPF = patientCPF;
-        this.doctorCRM = doctorCRM;
-        this.status = status;
+        long cpf = PatientIndex.pack(patientCPF);
+        if (cpf < 0) {
+            throw new IllegalArgumentException("CPF inválido: " + patientCPF);
+        }
+
+        // Consulta avulsa: tabela própria de uma linha até ser incluída em uma lista de consultas
+        this.table = new AppointmentTable(1);
+        this.row = table.append((int) date.toEpochDay(), minuteOf(time), cpf,
+                AppointmentTable.crmCode(doctorCRM), status, 0);
+    }
+
+    /**
+     * Visão de uma linha já existente da tabela
+     *
+     * @param table Tabela que guarda a consulta
+     * @param row Linha da consulta
+     */
+    Appointment(AppointmentTable table, int row) {
+        this.table = table;
+        this.row = row;
     }
 
     /**
@@ -67,7 +77,7 @@ public class Appointment {
      * @return true se a consulta pertence ao paciente, false caso contrário
      */
     public boolean belongsToPatient(String patientCPF) {
-        return this.patientCPF.equals(patientCPF);
+        return table.cpf(row) == PatientIndex.pack(patientCPF);
     }
 
     /**
@@ -76,7 +86,7 @@ public class Appointment {
      * @return true se a consulta já ocorreu, false caso contrário
      */
     public boolean hasOccurred() {
-        return LocalDateTime.of(date, time).isBefore(LocalDateTime.now());
+        return LocalDateTime.of(getDate(), getTime()).isBefore(AppointmentClock.now());
     }
 
     /**
@@ -85,7 +95,7 @@ public class Appointment {
      * @return true se a consulta ainda não ocorreu, false caso contrário
      */
     public boolean isPending() {
-        return status == AppointmentStatus.PENDING;
+        return getStatus() == AppointmentStatus.PENDING;
     }
 
     /**
@@ -96,8 +106,8 @@ public class Appointment {
      * @return true se a consulta está no período, false caso contrário
      */
     public boolean isInPeriod(LocalDate startDate, LocalDate endDate) {
-        return (date.isEqual(startDate) || date.isAfter(startDate)) &&
-                (date.isEqual(endDate)   || date.isBefore(endDate));
+        long day = table.epochDay(row);
+        return day >= startDate.toEpochDay() && day <= endDate.toEpochDay();
     }
 
     /**
@@ -108,7 +118,7 @@ public class Appointment {
     public String getFormattedDateTime() {
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
         DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-        return date.format(dateFormatter) + " às " + time.format(timeFormatter);
+        return getDate().format(dateFormatter) + " às " + getTime().format(timeFormatter);
     }
 
     /**
@@ -120,9 +130,9 @@ public class Appointment {
     @Override
     public String toString() {
         return "Consulta em " + getFormattedDateTime() +
-                ", Paciente: " + patientCPF +
-                ", Médico: " + doctorCRM +
-                ", Status: " + status.getDescription();
+                ", Paciente: " + getPatientCPF() +
+                ", Médico: " + getDoctorCRM() +
+                ", Status: " + getStatus().getDescription();
     }
 
     /**
@@ -131,14 +141,8 @@ public class Appointment {
      * @return String formatada para CSV
      */
     public String toCSVFormat() {
-        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-
-        return date.format(dateFormatter) + "," +
-                time.format(timeFormatter) + "," +
-                patientCPF + "," +
-                doctorCRM + "," +
-                status.name(); // Adicionado o status
+        // data,hora,CPF,CRM,status,id (ver AppointmentCsvCodec)
+        return AppointmentCsvCodec.encode(this);
     }
 
     /**
@@ -148,11 +152,20 @@ public class Appointment {
      * @param append Se true, adiciona ao final do arquivo; se false, sobrescreve o arquivo
      */
     public void saveToCSVFile(String filename, boolean append) {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename, append))) {
-            if (!append) {
-                writer.println("Data,Horario,CPF_Paciente,CRM_Medico,Status");
+        if (append) {
+            try {
+                GroupCommitWriter.forFile(filename).appendAndWait(Collections.singletonList(toCSVFormat()));
+            } catch (IOException error) {
+                System.out.println("Erro ao salvar no arquivo CSV: " + error.getMessage());
             }
-            writer.println(toCSVFormat());
+            return;
+        }
+
+        try {
+            AtomicFile.replaceLines(filename, writer -> {
+                writer.println(CSV_HEADER);
+                writer.println(toCSVFormat());
+            });
         } catch (IOException error) {
             System.out.println("Erro ao salvar no arquivo CSV: " + error.getMessage());
         }
@@ -160,29 +173,86 @@ public class Appointment {
 
     // Getters gerais
 
+    public long getId() {
+        return table.id(row);
+    }
+
+    void setId(long id) {
+        table.setId(row, id);
+    }
+
     public LocalDate getDate() {
-        return date;
+        return LocalDate.ofEpochDay(table.epochDay(row));
     }
 
     public LocalTime getTime() {
-        return time;
+        return LocalTime.ofSecondOfDay(table.minute(row) * 60L);
     }
 
     public String getPatientCPF() {
-        return patientCPF;
+        return AppointmentTable.cpfOf(table.cpf(row));
     }
 
     public String getDoctorCRM() {
-        return doctorCRM;
+        return AppointmentTable.crmOf(table.crm(row));
     }
 
     // Getter e Setter para Status das Consultas
     public AppointmentStatus getStatus() {
-        return status;
+        return table.status(row);
     }
 
     public void setStatus(AppointmentStatus status) {
-        this.status = status;
+        table.setStatus(row, status);
+    }
+
+    /**
+     * Move a consulta para uma nova data e hora, mantendo o mesmo identificador.
+     * Usado pela remarcação em {@link AppointmentStore}.
+     *
+     * @param newDate Nova data
+     * @param newTime Novo horário
+     */
+    void moveTo(LocalDate newDate, LocalTime newTime) {
+        table.setSlot(row, (int) newDate.toEpochDay(), minuteOf(newTime));
+        table.setStatus(row, AppointmentStatus.PENDING);
+    }
+
+    // Ligação com a tabela (usada por AppointmentTable)
+
+    AppointmentTable table() {
+        return table;
+    }
+
+    int row() {
+        return row;
+    }
+
+    void moveToTable(AppointmentTable table, int row) {
+        this.table = table;
+        this.row = row;
+    }
+
+    /**
+     * Copia os campos para uma tabela própria, desligando a consulta da tabela atual
+     */
+    void detach() {
+        AppointmentTable copy = new AppointmentTable(1);
+        copy.append(table.epochDay(row), table.minute(row), table.cpf(row), table.crm(row),
+                table.status(row), table.id(row));
+        this.table = copy;
+        this.row = 0;
+    }
+
+    /**
+     * Horário da consulta em minutos desde 1970-01-01, usado para ordenar pelo horário
+     */
+    long slotMinute() {
+        return table.epochDay(row) * 1440L + table.minute(row);
+    }
+
+    static int minuteOf(LocalTime time) {
+        return time.getHour() * 60 + time.getMinute();
     }
 
     /**
@@ -193,13 +263,7 @@ public class Appointment {
      * @return Lista de consultas do paciente especificado
      */
     public static List<Appointment> filterByPatient(List<Appointment> appointments, String patientCPF) {
-        List<Appointment> result = new ArrayList<>();
-        for (Appointment appointment : appointments) {
-            if (appointment.belongsToPatient(patientCPF)) {
-                result.add(appointment);
-            }
-        }
-        return result;
+        return AppointmentQuery.over(appointments).patient(patientCPF).list();
     }
 
     /**
@@ -208,7 +272,7 @@ public class Appointment {
      * @param line Linha do arquivo CSV
      * @return Objeto Appointment ou null em caso de erro
      */
-    private static Appointment parseLine(String line) {
+    static Appointment parseLine(String line) {
         DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
         DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
         String[] parts = line.split(",");
@@ -240,7 +304,18 @@ public class Appointment {
                 }
             }
 
-            return new Appointment(date, time, cpf, crm, status);
+            Appointment appointment = new Appointment(date, time, cpf, crm, status);
+
+            // Processar identificador, se existir (arquivos antigos têm 4 ou 5 colunas)
+            if (parts.length >= 6) {
+                try {
+                    appointment.setId(Long.parseLong(parts[5].trim()));
+                } catch (NumberFormatException e) {
+                    System.out.println("Id inválido na linha: " + line + ". Um novo id será atribuído.");
+                }
+            }
+
+            return appointment;
         } catch (Exception e) {
             System.out.println("Erro ao converter data/hora na linha: " + line);
             return null;
@@ -248,35 +323,55 @@ public class Appointment {
     }
 
     /**
-     * Carrega consultas de um arquivo CSV
+     * Carrega consultas de um arquivo CSV, aplicando as alterações
+     * registradas no log (ver {@link AppointmentLog}). Parte do checkpoint binário
+     * quando ele ainda corresponde ao CSV e ao log (ver {@link AppointmentCheckpoint})
      *
      * @param filename Nome do arquivo CSV
      * @return Lista de consultas carregadas
      */
     public static List<Appointment> loadFromCSV(String filename) {
-        List<Appointment> appointments = new ArrayList<>();
-
-        try (Scanner scanner = new Scanner(new File(filename))) {
-            if (scanner.hasNextLine()) {
-                scanner.nextLine();
-            }
+        return AppointmentLog.load(filename);
+    }
 
-            while (scanner.hasNextLine()) {
-                String line = scanner.nextLine().trim();
-                if (line.isEmpty()) continue;
+    /**
+     * Carrega apenas o snapshot do arquivo CSV, sem aplicar o log de alterações
+     *
+     * @param filename Nome do arquivo CSV
+     * @return Lista de consultas do snapshot
+     */
+    static List<Appointment> loadSnapshot(String filename) {
+        List<Appointment> appointments = new AppointmentTable();
 
-                Appointment appointment = parseLine(line);
-                if (appointment != null) {
-                    appointments.add(appointment);
-                }
-            }
+        try {
+            appointments = AppointmentCsvCodec.read(filename);
         } catch (IOException e) {
             System.out.println("Erro ao carregar as consultas: " + e.getMessage());
         }
 
+        assignMissingIds(appointments);
         return appointments;
     }
 
+    /**
+     * Atribui identificadores às consultas de arquivos antigos, sem a coluna Id.
+     * A atribuição segue a ordem do arquivo, então é a mesma em todo carregamento.
+     *
+     * @param appointments Consultas do snapshot
+     */
+    static void assignMissingIds(List<Appointment> appointments) {
+        long nextId = 1;
+        for (Appointment appointment : appointments) {
+            nextId = Math.max(nextId, appointment.getId() + 1);
+        }
+
+        for (Appointment appointment : appointments) {
+            if (appointment.getId() == 0) {
+                appointment.setId(nextId++);
+            }
+        }
+    }
+
     /**
      * Salva uma lista de consultas em um arquivo CSV
      *
@@ -285,13 +380,67 @@ public class Appointment {
      * @throws IOException se ocorrer erro ao escrever no arquivo
      */
     public static void saveAppointmentsToCSV(List<Appointment> appointments, String filename) throws IOException {
-        try (PrintWriter writer = new PrintWriter(new FileWriter(filename))) {
-            writer.println("Data,Horario,CPF_Paciente,CRM_Medico,Status");
+        writeSnapshot(appointments, filename);
+    }
+
+    /**
+     * Grava o snapshot em um arquivo temporário e o coloca no lugar do CSV de uma só vez
+     * (ver {@link AtomicFile}): uma queda no meio da gravação deixa o CSV anterior intacto
+     *
+     * @return Data de modificação e tamanho do CSV gravado
+     */
+    static long[] writeSnapshot(List<Appointment> appointments, String filename) throws IOException {
+        return AtomicFile.replaceLines(filename, writer -> {
+            writer.println(CSV_HEADER);
 
+            StringBuilder line = new StringBuilder(64);
             for (Appointment appointment : appointments) {
-                writer.println(appointment.toCSVFormat());
+                line.setLength(0);
+                AppointmentCsvCodec.encode(appointment, line);
+                writer.println(line);
+            }
+        });
+    }
+
+    /**
+     * Localiza um médico da lista pelo nome digitado, tolerando acentos e variações de grafia
+     *
+     * @param doctors Lista de médicos exibida
+     * @param name Nome digitado
+     * @param scanner Scanner para leitura
+     * @return Posição do médico na lista ou -1 se nenhum foi escolhido
+     */
+    private static int findDoctorByName(List<Doctor> doctors, String name, Scanner scanner) {
+        List<Doctor> matches = DoctorRegistry.findByName(name, doctors.size());
+        if (matches.isEmpty()) {
+            System.out.println("Nenhum médico encontrado com esse nome.");
+            return -1;
+        }
+
+        Doctor chosen = matches.get(0);
+        if (matches.size() > 1) {
+            System.out.println("\nMédicos encontrados:");
+            for (int i = 0; i < matches.size(); i++) {
+                System.out.println((i + 1) + " - " + matches.get(i).getName() + " (CRM: " + matches.get(i).getCode() + ")");
+            }
+            System.out.print("\nDigite o número do médico: ");
+            try {
+                int selection = Integer.parseInt(scanner.nextLine()) - 1;
+                if (selection < 0 || selection >= matches.size()) {
+                    System.out.println("Seleção inválida.");
+                    return -1;
+                }
+                chosen = matches.get(selection);
+            } catch (NumberFormatException e) {
+                System.out.println("Entrada inválida. Digite um número.");
+                return -1;
             }
         }
+
+        for (int i = 0; i < doctors.size(); i++) {
+            if (doctors.get(i).getCode().equals(chosen.getCode())) return i;
+        }
+        return -1;
     }
 
     /**
@@ -303,8 +452,8 @@ public class Appointment {
      */
     public static void scheduleNewAppointment(Patient patient, List<Appointment> appointments, Scanner scanner) {
         try {
-            // Carregar a lista de médicos
-            List<Doctor> doctors = Doctor.loadFromCSV(DOCTOR_CSV);
+            // Obter a lista de médicos do cadastro compartilhado
+            List<Doctor> doctors = DoctorRegistry.getDoctors();
 
             if (doctors.isEmpty()) {
                 System.out.println("Não há médicos cadastrados no sistema.");
@@ -317,14 +466,24 @@ public class Appointment {
                 System.out.println((i + 1) + " - " + doctors.get(i).getName() + " (CRM: " + doctors.get(i).getCode() + ")");
             }
 
-            System.out.print("\nDigite o número correspondente ao médico: ");
-            int doctorIndex = Integer.parseInt(scanner.nextLine()) - 1;
+            System.out.print("\nDigite o número correspondente ao médico (ou o nome): ");
+            String doctorInput = scanner.nextLine().trim();
+            int doctorIndex;
+            if (doctorInput.matches("\\d+")) {
+                doctorIndex = Integer.parseInt(doctorInput) - 1;
+            } else {
+                doctorIndex = findDoctorByName(doctors, doctorInput, scanner);
+                if (doctorIndex < 0) return;
+            }
 
             if (doctorIndex < 0 || doctorIndex >= doctors.size()) {
                 System.out.println("Seleção inválida.");
                 return;
             }
 
+            // Sugerir horários livres antes de pedir data e hora
+            UIUtils.showNextFreeSlots(doctors.get(doctorIndex).getCode(), 5);
+
             // Obter data da consulta
             System.out.print("Digite a data da consulta (yyyy-MM-dd): ");
             String dateStr = scanner.nextLine();
@@ -340,7 +499,7 @@ public class Appointment {
             LocalTime appointmentTime = LocalTime.parse(timeStr, timeFormatter);
 
             // Verificar se a data é no futuro
-            if (appointmentDate.isBefore(LocalDate.now())) {
+            if (appointmentDate.isBefore(AppointmentClock.today())) {
                 System.out.println("A data da consulta deve ser futura.");
                 return;
             }
@@ -348,18 +507,7 @@ public class Appointment {
             Doctor selectedDoctor = doctors.get(doctorIndex);
 
             // Verificar se já existe consulta no mesmo horário para o médico
-            boolean conflictFound = false;
-            for (Appointment appointment : appointments) {
-                if (appointment.getDoctorCRM().equals(selectedDoctor.getCode()) &&
-                        appointment.getDate().equals(appointmentDate) &&
-                        appointment.getTime().equals(appointmentTime) &&
-                        appointment.getStatus() == AppointmentStatus.PENDING) {
-                    conflictFound = true;
-                    break;
-                }
-            }
-
-            if (conflictFound) {
+            if (DoctorSchedule.isSlotTaken(selectedDoctor.getCode(), appointmentDate, appointmentTime, null)) {
                 System.out.println("Já existe uma consulta agendada com este médico neste horário.");
                 return;
             }
@@ -373,14 +521,12 @@ public class Appointment {
                     AppointmentStatus.PENDING
             );
 
-            appointment.saveToCSVFile(APPOINTMENT_CSV, true);
+            // Registrar a consulta e adicioná-la à lista geral
+            AppointmentStore.create(appointment, appointments);
 
             // Adicionar a consulta à lista do paciente
             patient.addAppointment(appointment);
 
-            // Adicionar a consulta à lista geral
-            appointments.add(appointment);
-
             System.out.println("\nConsulta agendada com sucesso!");
             System.out.println("Médico: " + selectedDoctor.getName());
             System.out.println("Data e hora: " + appointment.getFormattedDateTime());
@@ -401,24 +547,17 @@ public class Appointment {
      * @param scanner Scanner para leitura
      */
     public static void viewFutureAppointments(Patient patient, List<Appointment> appointments, Scanner scanner) {
-        List<Appointment> futureAppointments = new ArrayList<>();
-
-        // Filtrar consultas pendentes (futuras)
-        for (Appointment appointment : patient.getAppointmentList()) {
-            if (appointment.getStatus() == AppointmentStatus.PENDING) {
-                futureAppointments.add(appointment);
-            }
-        }
+        // Consultas pendentes (futuras), ordenadas por data/hora
+        List<Appointment> futureAppointments = AppointmentQuery.over(patient.getAppointmentList())
+                .status(AppointmentStatus.PENDING)
+                .orderByDateTime()
+                .list();
 
         if (futureAppointments.isEmpty()) {
             System.out.println("Você não tem consultas agendadas.");
             return;
         }
 
-        // Ordenar por data/hora
-        futureAppointments.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime));
-
         System.out.println("\nSuas consultas agendadas:");
 
         for (int i = 0; i < futureAppointments.size(); i++) {
@@ -475,27 +614,19 @@ public class Appointment {
      * @param scanner Scanner para leitura
      */
     public static void viewPastAppointments(Patient patient, Scanner scanner) {
-        List<Appointment> pastAppointments = new ArrayList<>();
+        // Consultas realizadas, mais recentes primeiro (as vencidas já foram marcadas como realizadas);
+        // as páginas seguem para o histórico arquivado quando as consultas em memória acabam
+        AppointmentStore.completeDue();
+        PageCursor<Appointment> cursor = PageCursor.over(
+                AppointmentStore.completedHistory(patient.getAppointmentList(), null, patient.getCpf(), null, null), 5);
 
-        // Filtrar consultas realizadas
-        for (Appointment appointment : patient.getAppointmentList()) {
-            if (appointment.getStatus() == AppointmentStatus.COMPLETED ||
-                    (appointment.hasOccurred() && appointment.getStatus() != AppointmentStatus.CANCELLED)) {
-                pastAppointments.add(appointment);
-            }
-        }
-
-        if (pastAppointments.isEmpty()) {
+        if (cursor.current().isEmpty()) {
             System.out.println("Você não tem consultas realizadas.");
             return;
         }
 
-        // Ordenar por data/hora (mais recente primeiro)
-        pastAppointments.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime).reversed());
-
         System.out.println("\nSuas consultas realizadas:");
-        UIUtils.paginateList(pastAppointments, 5, scanner);
+        UIUtils.paginate(cursor, Appointment::toString, scanner);
     }
 
     /**
@@ -506,24 +637,17 @@ public class Appointment {
      * @param scanner Scanner para leitura
      */
     public static void rescheduleAppointment(Patient patient, List<Appointment> appointments, Scanner scanner) {
-        List<Appointment> futureAppointments = new ArrayList<>();
-
-        // Filtrar consultas pendentes (futuras)
-        for (Appointment appointment : patient.getAppointmentList()) {
-            if (appointment.getStatus() == AppointmentStatus.PENDING) {
-                futureAppointments.add(appointment);
-            }
-        }
+        // Consultas pendentes (futuras), ordenadas por data/hora
+        List<Appointment> futureAppointments = AppointmentQuery.over(patient.getAppointmentList())
+                .status(AppointmentStatus.PENDING)
+                .orderByDateTime()
+                .list();
 
         if (futureAppointments.isEmpty()) {
             System.out.println("Você não tem consultas agendadas para remarcar.");
             return;
         }
 
-        // Ordenar por data/hora
-        futureAppointments.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime));
-
         System.out.println("\nSelecione a consulta que deseja remarcar:");
 
         for (int i = 0; i < futureAppointments.size(); i++) {
@@ -574,74 +698,22 @@ public class Appointment {
             LocalTime newTime = LocalTime.parse(timeStr, timeFormatter);
 
             // Verificar se a data é no futuro
-            if (newDate.isBefore(LocalDate.now())) {
+            if (newDate.isBefore(AppointmentClock.today())) {
                 System.out.println("A data da consulta deve ser futura.");
                 return;
             }
 
             // Verificar se já existe consulta no mesmo horário para o médico
-            boolean conflictFound = false;
-            for (Appointment existingAppointment : appointments) {
-                if (existingAppointment != currentAppointment &&
-                        existingAppointment.getDoctorCRM().equals(currentAppointment.getDoctorCRM()) &&
-                        existingAppointment.getDate().equals(newDate) &&
-                        existingAppointment.getTime().equals(newTime) &&
-                        existingAppointment.getStatus() == AppointmentStatus.PENDING) {
-                    conflictFound = true;
-                    break;
-                }
-            }
-
-            if (conflictFound) {
+            if (DoctorSchedule.isSlotTaken(currentAppointment.getDoctorCRM(), newDate, newTime, currentAppointment)) {
                 System.out.println("Já existe uma consulta agendada com este médico neste horário.");
                 return;
             }
 
-            // Remover a consulta antiga
-            int indexToRemove = -1;
-            for (int i = 0; i < appointments.size(); i++) {
-                Appointment existingAppointment = appointments.get(i);
-                if (existingAppointment.getDate().equals(currentAppointment.getDate()) &&
-                        existingAppointment.getTime().equals(currentAppointment.getTime()) &&
-                        existingAppointment.getPatientCPF().equals(currentAppointment.getPatientCPF()) &&
-                        existingAppointment.getDoctorCRM().equals(currentAppointment.getDoctorCRM())) {
-
-                    indexToRemove = i;
-                    break;
-                }
-            }
-
-            if (indexToRemove != -1) {
-                // Criar nova consulta com os mesmos dados, exceto data e hora
-                Appointment newAppointment = new Appointment(
-                        newDate,
-                        newTime,
-                        currentAppointment.getPatientCPF(),
-                        currentAppointment.getDoctorCRM(),
-                        AppointmentStatus.PENDING
-                );
-
-                // Substituir na lista geral
-                appointments.set(indexToRemove, newAppointment);
-
-                // Salvar a lista atualizada
-                Appointment.saveAppointmentsToCSV(appointments, APPOINTMENT_CSV);
-
-                // Substituir na lista do paciente
-                for (int i = 0; i < patient.getAppointmentList().size(); i++) {
-                    Appointment patientAppointment = patient.getAppointmentList().get(i);
-                    if (patientAppointment.getDate().equals(currentAppointment.getDate()) &&
-                            patientAppointment.getTime().equals(currentAppointment.getTime()) &&
-                            patientAppointment.getDoctorCRM().equals(currentAppointment.getDoctorCRM())) {
-
-                        // Substituir na lista de consultas do paciente
-                        patient.getAppointmentList().set(i, newAppointment);
-                        break;
-                    }
-                }
-
+            // Mover a consulta para a nova data e hora, mantendo o mesmo id
+            // (a lista geral e a lista do paciente referenciam o mesmo objeto)
+            if (AppointmentStore.reschedule(currentAppointment, newDate, newTime)) {
                 System.out.println("Consulta remarcada com sucesso!");
-                System.out.println("Nova data e hora: " + newAppointment.getFormattedDateTime());
+                System.out.println("Nova data e hora: " + currentAppointment.getFormattedDateTime());
             } else {
                 System.out.println("Erro: Consulta não encontrada na lista.");
             }
@@ -662,24 +734,17 @@ public class Appointment {
      * @param scanner Scanner para leitura
      */
     public static void cancelAppointment(Patient patient, List<Appointment> appointments, Scanner scanner) {
-        List<Appointment> futureAppointments = new ArrayList<>();
-
-        // Filtrar consultas pendentes (futuras)
-        for (Appointment appointment : patient.getAppointmentList()) {
-            if (appointment.getStatus() == AppointmentStatus.PENDING) {
-                futureAppointments.add(appointment);
-            }
-        }
+        // Consultas pendentes (futuras), ordenadas por data/hora
+        List<Appointment> futureAppointments = AppointmentQuery.over(patient.getAppointmentList())
+                .status(AppointmentStatus.PENDING)
+                .orderByDateTime()
+                .list();
 
         if (futureAppointments.isEmpty()) {
             System.out.println("Você não tem consultas agendadas para cancelar.");
             return;
         }
 
-        // Ordenar por data/hora
-        futureAppointments.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime));
-
         System.out.println("\nSelecione a consulta que deseja cancelar:");
 
         for (int i = 0; i < futureAppointments.size(); i++) {
@@ -719,23 +784,8 @@ public class Appointment {
      */
     public static void cancelAppointment(Appointment currentAppointment, List<Appointment> appointments) {
         try {
-            // Encontrar e atualizar a consulta na lista
-            for (Appointment existingAppointment : appointments) {
-                if (existingAppointment.getDate().equals(currentAppointment.getDate()) &&
-                        existingAppointment.getTime().equals(currentAppointment.getTime()) &&
-                        existingAppointment.getPatientCPF().equals(currentAppointment.getPatientCPF()) &&
-                        existingAppointment.getDoctorCRM().equals(currentAppointment.getDoctorCRM())) {
-
-                    existingAppointment.setStatus(AppointmentStatus.CANCELLED);
-                    break;
-                }
-            }
-
-            // Atualizar o status na lista do paciente
-            currentAppointment.setStatus(AppointmentStatus.CANCELLED);
-
-            // Salvar a lista atualizada
-            Appointment.saveAppointmentsToCSV(appointments, APPOINTMENT_CSV);
+            // Atualizar o status na lista geral e na lista do paciente
+            AppointmentStore.cancel(currentAppointment);
 
             System.out.println("Consulta cancelada com sucesso!");
 
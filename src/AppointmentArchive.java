@@ -0,0 +1,530 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Arquivo do histórico de consultas em segmentos mensais.
+ * Consultas já realizadas ou canceladas de meses anteriores à janela recente
+ * ({@code appointments.hotMonths} meses antes do mês atual, padrão 12) saem do snapshot
+ * appointments.csv na compactação e vão para um arquivo por mês no diretório
+ * appointments-archive (ex: appointments-archive/2013-12.csv, mesmo layout do snapshot).
+ * Assim a inicialização carrega só o mês atual, os futuros e a janela recente.
+ *
+ * Os segmentos são lidos só quando uma consulta ao histórico chega ao mês
+ * ({@link #newestFirst}) e ficam em um cache dos mais usados, com no máximo
+ * {@code appointments.cachedSegments} meses (padrão 6); os demais são descartados.
+ * Os índices que cobrem todo o histórico (relações médico/paciente e última visita)
+ * partem de um resumo por par médico/paciente (summary.csv), sem ler os segmentos.
+ * Consultas arquivadas não mudam mais: realizadas e canceladas não voltam a ser alteradas.
+ */
+public class AppointmentArchive {
+
+    private static final int HOT_MONTHS = Math.max(0, Integer.getInteger("appointments.hotMonths", 12));
+    private static final int CACHED_SEGMENTS = Math.max(1, Integer.getInteger("appointments.cachedSegments", 6));
+
+    private static final String SUMMARY_FILE = "summary.csv";
+    private static final String LOCK_FILE = ".lock";
+    private static final String SUMMARY_HEADER = "CRM,CPF,Consultas,Realizadas,PrimeiraVisita,UltimaVisita,UltimaNaoCancelada";
+
+    /** Segmentos lidos recentemente, do menos para o mais usado */
+    private static final Map<File, Segment> segments = new LinkedHashMap<File, Segment>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<File, Segment> eldest) {
+            return size() > CACHED_SEGMENTS;
+        }
+    };
+
+    /** Resumo carregado por arquivo de snapshot */
+    private static final Map<String, Summary> summaries = new LinkedHashMap<>();
+
+    /**
+     * Segmento mensal em memória, com o estado do arquivo quando foi lido
+     */
+    private static final class Segment {
+        final AppointmentTable appointments;
+        final long modified;
+        final long length;
+
+        Segment(AppointmentTable appointments, File file) {
+            this.appointments = appointments;
+            this.modified = file.lastModified();
+            this.length = file.length();
+        }
+    }
+
+    /**
+     * Histórico arquivado de um par médico/paciente
+     */
+    static final class PairHistory {
+        final String doctorCRM;
+        final String patientCPF;
+        int appointmentCount;
+        int visitCount;
+        LocalDate firstVisit;
+        LocalDate lastVisit;
+        /** Última consulta não cancelada (realizada) */
+        LocalDate lastValid;
+
+        PairHistory(String doctorCRM, String patientCPF) {
+            this.doctorCRM = doctorCRM;
+            this.patientCPF = patientCPF;
+        }
+
+        private PairHistory copy() {
+            PairHistory copy = new PairHistory(doctorCRM, patientCPF);
+            copy.appointmentCount = appointmentCount;
+            copy.visitCount = visitCount;
+            copy.firstVisit = firstVisit;
+            copy.lastVisit = lastVisit;
+            copy.lastValid = lastValid;
+            return copy;
+        }
+
+        private void add(LocalDate date, AppointmentStatus status) {
+            appointmentCount++;
+            if (status == AppointmentStatus.COMPLETED) {
+                visitCount++;
+                if (firstVisit == null || date.isBefore(firstVisit)) firstVisit = date;
+                if (lastVisit == null || date.isAfter(lastVisit)) lastVisit = date;
+            }
+            if (status != AppointmentStatus.CANCELLED && (lastValid == null || date.isAfter(lastValid))) {
+                lastValid = date;
+            }
+        }
+    }
+
+    /**
+     * Resumo do histórico arquivado: um registro por par e o maior identificador usado
+     */
+    static final class Summary {
+        private final Map<String, PairHistory> pairs = new LinkedHashMap<>();
+        private long maxId = 0;
+        private long segmentCount = -1;
+        private long segmentBytes = -1;
+
+        Collection<PairHistory> pairs() {
+            return Collections.unmodifiableCollection(pairs.values());
+        }
+
+        long maxId() {
+            return maxId;
+        }
+
+        /**
+         * Cópia para acrescentar consultas sem alterar o resumo em uso
+         */
+        private Summary copy() {
+            Summary copy = new Summary();
+            for (Map.Entry<String, PairHistory> pair : pairs.entrySet()) {
+                copy.pairs.put(pair.getKey(), pair.getValue().copy());
+            }
+            copy.maxId = maxId;
+            return copy;
+        }
+
+        private void add(AppointmentTable appointments, int row) {
+            String crm = AppointmentTable.crmOf(appointments.crm(row));
+            String cpf = AppointmentTable.cpfOf(appointments.cpf(row));
+            pairs.computeIfAbsent(crm + "," + cpf, key -> new PairHistory(crm, cpf))
+                    .add(LocalDate.ofEpochDay(appointments.epochDay(row)), appointments.status(row));
+            maxId = Math.max(maxId, appointments.id(row));
+        }
+    }
+
+    /**
+     * Retorna o diretório dos segmentos de um snapshot CSV
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @return Nome do diretório (ex: appointments-archive)
+     */
+    public static String directoryFor(String csvFile) {
+        int dot = csvFile.lastIndexOf('.');
+        String base = dot > 0 ? csvFile.substring(0, dot) : csvFile;
+        return base + "-archive";
+    }
+
+    /**
+     * Primeiro dia mantido em memória: início do mês atual menos a janela recente
+     */
+    public static LocalDate hotStart() {
+        return AppointmentClock.today().withDayOfMonth(1).minusMonths(HOT_MONTHS);
+    }
+
+    /**
+     * Verifica se alguma consulta da tabela já deveria estar arquivada
+     *
+     * @param appointments Consultas carregadas
+     */
+    static boolean hasCold(AppointmentTable appointments) {
+        int hotStartDay = (int) hotStart().toEpochDay();
+        for (int row = 0; row < appointments.size(); row++) {
+            if (isCold(appointments, row, hotStartDay)) return true;
+        }
+        return false;
+    }
+
+    private static boolean isCold(AppointmentTable appointments, int row, int hotStartDay) {
+        return appointments.epochDay(row) < hotStartDay && appointments.status(row) != AppointmentStatus.PENDING;
+    }
+
+    /**
+     * Move para os segmentos mensais as consultas anteriores à janela recente que não estão pendentes.
+     * Os segmentos e o resumo são gravados antes de o chamador gravar o novo snapshot: uma queda
+     * no meio deixa as consultas nos dois lugares (a próxima compactação termina o trabalho,
+     * sem duplicar nada nos segmentos), nunca em nenhum.
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param appointments Todas as consultas do snapshot
+     * @return Consultas que continuam no snapshot (a própria tabela se nada foi arquivado)
+     * @throws IOException se ocorrer erro ao gravar um segmento ou o resumo
+     */
+    static synchronized AppointmentTable archive(String csvFile, AppointmentTable appointments) throws IOException {
+        int hotStartDay = (int) hotStart().toEpochDay();
+        Map<YearMonth, List<Integer>> coldRows = new TreeMap<>();
+        AppointmentTable hot = new AppointmentTable(appointments.size());
+        for (int row = 0; row < appointments.size(); row++) {
+            if (isCold(appointments, row, hotStartDay)) {
+                YearMonth month = YearMonth.from(LocalDate.ofEpochDay(appointments.epochDay(row)));
+                coldRows.computeIfAbsent(month, key -> new ArrayList<>()).add(row);
+            } else {
+                copyRow(appointments, row, hot);
+            }
+        }
+        if (coldRows.isEmpty()) {
+            return appointments;
+        }
+
+        File directory = new File(directoryFor(csvFile));
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Não foi possível criar o diretório " + directory);
+        }
+
+        // Outro processo pode estar arquivando os mesmos meses: o resumo é lido e regravado com a trava,
+        // senão um resumo lido antes dos segmentos do outro processo apagaria as consultas que ele somou
+        try (FileChannel lockFile = FileChannel.open(new File(directory, LOCK_FILE).toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+            FileLock lock = lockFile.lock();
+            try {
+                archive(csvFile, directory, appointments, coldRows);
+            } finally {
+                lock.release();
+            }
+        }
+        return hot;
+    }
+
+    private static void archive(String csvFile, File directory, AppointmentTable appointments,
+                                Map<YearMonth, List<Integer>> coldRows) throws IOException {
+        // O resumo em uso só é trocado pela cópia quando ela estiver gravada: se um segmento
+        // ou o resumo falhar, a próxima leitura o refaz a partir dos segmentos
+        Summary summary = summary(csvFile).copy();
+        for (Map.Entry<YearMonth, List<Integer>> month : coldRows.entrySet()) {
+            File file = segmentFile(directory, month.getKey());
+            AppointmentTable segment = file.exists() ? AppointmentCsvCodec.read(file.getPath()) : new AppointmentTable();
+
+            // Consultas já arquivadas por uma compactação interrompida não entram de novo
+            Set<Long> ids = new HashSet<>();
+            for (int row = 0; row < segment.size(); row++) {
+                ids.add(segment.id(row));
+            }
+
+            int before = segment.size();
+            for (int row : month.getValue()) {
+                if (ids.add(appointments.id(row))) {
+                    copyRow(appointments, row, segment);
+                    summary.add(appointments, row);
+                }
+            }
+            if (segment.size() > before) {
+                Appointment.writeSnapshot(segment, file.getPath());
+                segments.remove(file);
+            }
+        }
+
+        writeSummary(csvFile, summary);
+    }
+
+    /**
+     * Resumo do histórico arquivado (refeito a partir dos segmentos se estiver ausente ou desatualizado)
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @return Resumo; vazio se não há histórico arquivado
+     */
+    static synchronized Summary summary(String csvFile) {
+        File directory = new File(directoryFor(csvFile));
+        TreeMap<YearMonth, File> files = segmentFiles(directory);
+        if (files.isEmpty()) {
+            summaries.remove(csvFile);
+            return new Summary();
+        }
+
+        long bytes = 0;
+        for (File file : files.values()) {
+            bytes += file.length();
+        }
+
+        Summary summary = summaries.get(csvFile);
+        if (summary == null || summary.segmentCount != files.size() || summary.segmentBytes != bytes) {
+            summary = readSummary(new File(directory, SUMMARY_FILE));
+        }
+        if (summary == null || summary.segmentCount != files.size() || summary.segmentBytes != bytes) {
+            // Segmentos gravados sem o resumo correspondente (queda no meio do arquivamento)
+            System.out.println("Refazendo o resumo do histórico arquivado de consultas...");
+            summary = new Summary();
+            for (File file : files.values()) {
+                try {
+                    AppointmentTable segment = AppointmentCsvCodec.read(file.getPath());
+                    for (int row = 0; row < segment.size(); row++) {
+                        summary.add(segment, row);
+                    }
+                } catch (IOException e) {
+                    System.out.println("Erro ao ler o segmento " + file.getName() + ": " + e.getMessage());
+                }
+            }
+            summary.segmentCount = files.size();
+            summary.segmentBytes = bytes;
+        }
+
+        summaries.put(csvFile, summary);
+        return summary;
+    }
+
+    /**
+     * Consultas arquivadas, da mais recente para a mais antiga.
+     * Cada segmento mensal só é lido quando a iteração chega a ele; o resumo limita
+     * os meses aos que podem ter consultas do médico ou do paciente.
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param crm CRM do médico ou null para todos
+     * @param cpf CPF do paciente ou null para todos
+     * @param status Status das consultas ou null para todos (realizadas e canceladas)
+     * @param startDate Data inicial (inclusiva) ou null para todo o histórico
+     * @param endDate Data final (inclusiva) ou null para todo o histórico
+     * @return Iterador sobre cópias das consultas (não mantêm o segmento em memória)
+     */
+    static Iterator<Appointment> newestFirst(String csvFile, String crm, String cpf, AppointmentStatus status,
+                                             LocalDate startDate, LocalDate endDate) {
+        List<YearMonth> months = monthsToRead(csvFile, crm, cpf, status, startDate, endDate);
+
+        return new Iterator<Appointment>() {
+            private int nextMonth = 0;
+            private Iterator<Appointment> current = Collections.emptyIterator();
+
+            @Override
+            public boolean hasNext() {
+                while (!current.hasNext() && nextMonth < months.size()) {
+                    current = read(csvFile, months.get(nextMonth++), crm, cpf, status, startDate, endDate).iterator();
+                }
+                return current.hasNext();
+            }
+
+            @Override
+            public Appointment next() {
+                if (!hasNext()) throw new NoSuchElementException();
+                return current.next();
+            }
+        };
+    }
+
+    /**
+     * Meses com segmento que podem ter consultas do médico ou do paciente no período, do mais recente ao mais antigo.
+     * O resumo só guarda as datas das consultas realizadas: para outros status, ele apenas descarta pares sem consultas.
+     */
+    private static synchronized List<YearMonth> monthsToRead(String csvFile, String crm, String cpf, AppointmentStatus status,
+                                                             LocalDate startDate, LocalDate endDate) {
+        LocalDate first = startDate;
+        LocalDate last = endDate;
+        if (crm != null || cpf != null) {
+            boolean completedOnly = status == AppointmentStatus.COMPLETED;
+            boolean found = false;
+            LocalDate firstVisit = null;
+            LocalDate lastVisit = null;
+            for (PairHistory pair : summary(csvFile).pairs()) {
+                if ((completedOnly ? pair.visitCount : pair.appointmentCount) == 0) continue;
+                if (crm != null && !crm.equals(pair.doctorCRM)) continue;
+                if (cpf != null && !cpf.equals(pair.patientCPF)) continue;
+                found = true;
+                if (!completedOnly) continue;
+                if (firstVisit == null || pair.firstVisit.isBefore(firstVisit)) firstVisit = pair.firstVisit;
+                if (lastVisit == null || pair.lastVisit.isAfter(lastVisit)) lastVisit = pair.lastVisit;
+            }
+            if (!found) return Collections.emptyList();
+            if (completedOnly) {
+                first = first == null || firstVisit.isAfter(first) ? firstVisit : first;
+                last = last == null || lastVisit.isBefore(last) ? lastVisit : last;
+            }
+        }
+
+        TreeMap<YearMonth, File> files = segmentFiles(new File(directoryFor(csvFile)));
+        if (files.isEmpty() || (first != null && last != null && first.isAfter(last))) {
+            return Collections.emptyList();
+        }
+        YearMonth from = first != null ? YearMonth.from(first) : files.firstKey();
+        YearMonth to = last != null ? YearMonth.from(last) : files.lastKey();
+        if (from.isAfter(to)) return Collections.emptyList();
+        return new ArrayList<>(files.subMap(from, true, to, true).descendingKeySet());
+    }
+
+    /**
+     * Consultas de um segmento que atendem aos filtros, mais recentes primeiro
+     */
+    private static List<Appointment> read(String csvFile, YearMonth month, String crm, String cpf, AppointmentStatus status,
+                                          LocalDate startDate, LocalDate endDate) {
+        AppointmentTable segment = segment(csvFile, month);
+        LocalDate from = startDate != null && startDate.isAfter(month.atDay(1)) ? startDate : month.atDay(1);
+        LocalDate to = endDate != null && endDate.isBefore(month.atEndOfMonth()) ? endDate : month.atEndOfMonth();
+
+        AppointmentQuery query = AppointmentQuery.over(segment)
+                .doctor(crm)
+                .patient(cpf)
+                .between(from, to)
+                .newestFirst();
+        if (status != null) {
+            query.status(status);
+        }
+        List<Appointment> found = query.list();
+
+        // Cópias em uma tabela própria: o segmento pode sair do cache enquanto as páginas são exibidas
+        AppointmentTable copies = new AppointmentTable(found.size());
+        for (Appointment appointment : found) {
+            copyRow(appointment.table(), appointment.row(), copies);
+        }
+        return copies;
+    }
+
+    /**
+     * Segmento de um mês, do cache ou lido do arquivo (um mês sem segmento é vazio)
+     */
+    private static synchronized AppointmentTable segment(String csvFile, YearMonth month) {
+        File file = segmentFile(new File(directoryFor(csvFile)), month);
+        Segment cached = segments.get(file);
+        if (cached != null && cached.modified == file.lastModified() && cached.length == file.length()) {
+            return cached.appointments;
+        }
+
+        AppointmentTable appointments = new AppointmentTable();
+        if (file.exists()) {
+            try {
+                appointments = AppointmentCsvCodec.read(file.getPath());
+            } catch (IOException e) {
+                System.out.println("Erro ao ler o segmento " + file.getName() + ": " + e.getMessage());
+                return appointments;
+            }
+        }
+        segments.put(file, new Segment(appointments, file));
+        return appointments;
+    }
+
+    private static File segmentFile(File directory, YearMonth month) {
+        return new File(directory, month + ".csv");
+    }
+
+    /**
+     * Segmentos existentes, por mês
+     */
+    private static TreeMap<YearMonth, File> segmentFiles(File directory) {
+        TreeMap<YearMonth, File> files = new TreeMap<>();
+        File[] entries = directory.listFiles((dir, name) -> name.endsWith(".csv") && !name.equals(SUMMARY_FILE));
+        if (entries == null) return files;
+
+        for (File file : entries) {
+            try {
+                files.put(YearMonth.parse(file.getName().substring(0, file.getName().length() - 4)), file);
+            } catch (DateTimeParseException e) {
+                // Outro arquivo qualquer no diretório
+            }
+        }
+        return files;
+    }
+
+    /**
+     * Copia uma linha para o fim de outra tabela
+     *
+     * @return Linha na tabela de destino
+     */
+    private static int copyRow(AppointmentTable source, int row, AppointmentTable target) {
+        return target.append(source.epochDay(row), source.minute(row), source.cpf(row), source.crm(row),
+                source.status(row), source.id(row));
+    }
+
+    /**
+     * Lê o resumo gravado
+     *
+     * @return Resumo ou null se não existir ou estiver ilegível
+     */
+    private static Summary readSummary(File file) {
+        if (!file.exists()) return null;
+
+        Summary summary = new Summary();
+        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
+            // Primeira linha: segmentos, bytes e maior id cobertos pelo resumo
+            String[] stamp = reader.readLine().split(",");
+            summary.segmentCount = Long.parseLong(stamp[0]);
+            summary.segmentBytes = Long.parseLong(stamp[1]);
+            summary.maxId = Long.parseLong(stamp[2]);
+            reader.readLine(); // cabeçalho
+
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split(",", -1);
+                PairHistory pair = new PairHistory(parts[0], parts[1]);
+                pair.appointmentCount = Integer.parseInt(parts[2]);
+                pair.visitCount = Integer.parseInt(parts[3]);
+                pair.firstVisit = parts[4].isEmpty() ? null : LocalDate.parse(parts[4]);
+                pair.lastVisit = parts[5].isEmpty() ? null : LocalDate.parse(parts[5]);
+                pair.lastValid = parts[6].isEmpty() ? null : LocalDate.parse(parts[6]);
+                summary.pairs.put(pair.doctorCRM + "," + pair.patientCPF, pair);
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+        return summary;
+    }
+
+    /**
+     * Grava o resumo (substituição atômica), anotando os segmentos que ele cobre
+     */
+    private static void writeSummary(String csvFile, Summary summary) throws IOException {
+        File directory = new File(directoryFor(csvFile));
+        TreeMap<YearMonth, File> files = segmentFiles(directory);
+        long bytes = 0;
+        for (File file : files.values()) {
+            bytes += file.length();
+        }
+        summary.segmentCount = files.size();
+        summary.segmentBytes = bytes;
+
+        AtomicFile.replaceLines(new File(directory, SUMMARY_FILE).getPath(), writer -> {
+            writer.println(summary.segmentCount + "," + summary.segmentBytes + "," + summary.maxId);
+            writer.println(SUMMARY_HEADER);
+            for (PairHistory pair : summary.pairs.values()) {
+                writer.println(pair.doctorCRM + "," + pair.patientCPF + "," + pair.appointmentCount + ","
+                        + pair.visitCount + "," + orEmpty(pair.firstVisit) + "," + orEmpty(pair.lastVisit) + ","
+                        + orEmpty(pair.lastValid));
+            }
+        });
+        summaries.put(csvFile, summary);
+    }
+
+    private static String orEmpty(LocalDate date) {
+        return date == null ? "" : date.toString();
+    }
+}
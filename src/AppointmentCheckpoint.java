@@ -0,0 +1,263 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Checkpoint binário das consultas (ex: appointments.ckpt), gravado ao lado do snapshot CSV.
+ * Guarda as colunas da {@link AppointmentTable} já decodificadas, junto com a identificação
+ * do CSV de onde vieram (data de modificação e tamanho) e o trecho inicial do log de
+ * alterações que já está incorporado. Na inicialização, se o CSV é o mesmo e o log ainda
+ * começa pelo mesmo trecho, as consultas vêm do checkpoint e só o restante do log é
+ * aplicado; caso contrário o checkpoint é ignorado e vale o CSV com o log inteiro.
+ *
+ * Cada parte do arquivo termina com um CRC32C do seu conteúdo, e o arquivo é sempre
+ * substituído de forma atômica ({@link AtomicFile}): um checkpoint danificado é
+ * detectado e descartado, nunca lido pela metade.
+ *
+ * Layout (little-endian):
+ * <pre>
+ * cabeçalho: magic (int) | versão (int) | modificação do CSV (long) | tamanho do CSV (long) |
+ *            bytes do log incorporados (long) | CRC32C desses bytes (int) | linhas (int) | CRC32C (int)
+ * CRMs:      quantidade (int) | [tamanho (short) | bytes UTF-8]... | CRC32C (int)
+ * blocos:    linhas (int) | dias int[] | minutos short[] | CPFs long[] | CRMs int[] | status byte[] | ids long[] | CRC32C (int)
+ * </pre>
+ * Os CRMs das linhas são posições na lista de CRMs do próprio arquivo.
+ */
+public class AppointmentCheckpoint {
+
+    private static final int MAGIC = 0x4D454443; // "MEDC"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 44;
+
+    /** Linhas por bloco (cerca de 110 KB por CRC32C) */
+    private static final int BLOCK_ROWS = 4096;
+    private static final int ROW_BYTES = 4 + 2 + 8 + 4 + 1 + 8;
+
+    private static final AppointmentStatus[] STATUSES = AppointmentStatus.values();
+
+    /**
+     * Ponto de partida do carregamento
+     */
+    static final class Image {
+        final AppointmentTable appointments;
+        /** Quantidade de bytes do início do log já incorporados às consultas */
+        final int logCovered;
+        /** false quando as consultas vieram do CSV, por falta de checkpoint válido */
+        final boolean fromCheckpoint;
+
+        Image(AppointmentTable appointments, int logCovered, boolean fromCheckpoint) {
+            this.appointments = appointments;
+            this.logCovered = logCovered;
+            this.fromCheckpoint = fromCheckpoint;
+        }
+    }
+
+    /**
+     * Retorna o nome do checkpoint associado a um snapshot CSV
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @return Nome do checkpoint (ex: appointments.ckpt)
+     */
+    public static String fileFor(String csvFile) {
+        int dot = csvFile.lastIndexOf('.');
+        String base = dot > 0 ? csvFile.substring(0, dot) : csvFile;
+        return base + ".ckpt";
+    }
+
+    /**
+     * Lê o checkpoint se ele corresponder ao CSV e ao log atuais
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param csvStamp {data de modificação, tamanho} do CSV
+     * @param log Conteúdo atual do log de alterações
+     * @return Consultas do checkpoint ou null se não existir, for de outro CSV ou log, ou estiver danificado
+     */
+    static Image read(String csvFile, long[] csvStamp, byte[] log) {
+        String filename = fileFor(csvFile);
+        ByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            if (channel.size() < HEADER_SIZE || channel.size() > Integer.MAX_VALUE) return null;
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()).order(ByteOrder.LITTLE_ENDIAN);
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException e) {
+            System.out.println("Erro ao ler o checkpoint de consultas: " + e.getMessage());
+            return null;
+        }
+
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION || !checksumMatches(buffer, 0, HEADER_SIZE - 4)) {
+            return invalid(filename, "cabeçalho");
+        }
+
+        // Checkpoint de outro CSV ou de um log que foi reescrito: não vale mais
+        long logCovered = buffer.getLong(24);
+        if (buffer.getLong(8) != csvStamp[0] || buffer.getLong(16) != csvStamp[1]
+                || logCovered < 0 || logCovered > log.length || crcOf(log, (int) logCovered) != buffer.getInt(32)) {
+            return null;
+        }
+
+        int rows = buffer.getInt(36);
+        int position = HEADER_SIZE;
+
+        int[] crmCodes;
+        try {
+            int count = buffer.getInt(position);
+            int start = position;
+            position += 4;
+            for (int i = 0; i < count; i++) {
+                position += 2 + buffer.getShort(position);
+            }
+            if (count < 0 || !checksumMatches(buffer, start, position - start)) {
+                return invalid(filename, "lista de CRMs");
+            }
+
+            // Só depois de conferida a lista os CRMs entram no dicionário da tabela
+            crmCodes = new int[count];
+            int entry = start + 4;
+            for (int i = 0; i < count; i++) {
+                byte[] crm = new byte[buffer.getShort(entry)];
+                buffer.get(entry + 2, crm);
+                entry += 2 + crm.length;
+                crmCodes[i] = AppointmentTable.crmCode(new String(crm, StandardCharsets.UTF_8));
+            }
+            position += 4;
+        } catch (IndexOutOfBoundsException | IllegalArgumentException | NegativeArraySizeException e) {
+            return invalid(filename, "lista de CRMs");
+        }
+
+        AppointmentTable appointments = new AppointmentTable(rows);
+        while (appointments.size() < rows) {
+            if (buffer.capacity() - position < 4) return invalid(filename, "bloco " + appointments.size() / BLOCK_ROWS);
+
+            int count = buffer.getInt(position);
+            long length = 4 + (long) count * ROW_BYTES;
+            if (count <= 0 || count > BLOCK_ROWS || buffer.capacity() - position < length + 4
+                    || !checksumMatches(buffer, position, (int) length)) {
+                return invalid(filename, "bloco " + appointments.size() / BLOCK_ROWS);
+            }
+
+            int days = position + 4;
+            int minutes = days + 4 * count;
+            int cpfs = minutes + 2 * count;
+            int crms = cpfs + 8 * count;
+            int statuses = crms + 4 * count;
+            int ids = statuses + count;
+            for (int i = 0; i < count; i++) {
+                int crm = buffer.getInt(crms + 4 * i);
+                int status = buffer.get(statuses + i);
+                if (crm < 0 || crm >= crmCodes.length || status < 0 || status >= STATUSES.length) {
+                    return invalid(filename, "bloco " + appointments.size() / BLOCK_ROWS);
+                }
+                appointments.append(buffer.getInt(days + 4 * i), buffer.getShort(minutes + 2 * i),
+                        buffer.getLong(cpfs + 8 * i), crmCodes[crm], STATUSES[status], buffer.getLong(ids + 8 * i));
+            }
+            position += (int) length + 4;
+        }
+
+        if (position != buffer.capacity()) return invalid(filename, "final do arquivo");
+        return new Image(appointments, (int) logCovered, true);
+    }
+
+    /**
+     * Grava o checkpoint (substituindo o anterior de forma atômica)
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param appointments Consultas: o CSV informado com os primeiros bytes do log aplicados
+     * @param csvStamp {data de modificação, tamanho} do CSV de onde as consultas vieram
+     * @param log Log de alterações lido junto com o CSV
+     * @param logCovered Quantidade de bytes do início do log já aplicados às consultas
+     * @throws IOException se ocorrer erro ao gravar
+     */
+    static void write(String csvFile, AppointmentTable appointments, long[] csvStamp, byte[] log, int logCovered) throws IOException {
+        int rows = appointments.size();
+
+        // Lista de CRMs do arquivo: os códigos da tabela só valem dentro deste processo
+        Map<Integer, Integer> positions = new HashMap<>();
+        int[] fileCrms = new int[rows];
+        ByteBuffer crmList = ByteBuffer.allocate(4096).order(ByteOrder.LITTLE_ENDIAN);
+        crmList.putInt(0);
+        for (int row = 0; row < rows; row++) {
+            int code = appointments.crm(row);
+            Integer position = positions.get(code);
+            if (position == null) {
+                position = positions.size();
+                positions.put(code, position);
+
+                byte[] crm = AppointmentTable.crmOf(code).getBytes(StandardCharsets.UTF_8);
+                if (crmList.remaining() < 2 + crm.length + 4) {
+                    crmList = ByteBuffer.allocate(crmList.capacity() * 2 + crm.length).order(ByteOrder.LITTLE_ENDIAN)
+                            .put(crmList.flip());
+                }
+                crmList.putShort((short) crm.length).put(crm);
+            }
+            fileCrms[row] = position;
+        }
+        crmList.putInt(0, positions.size());
+        sealBlock(crmList);
+        ByteBuffer crmSection = crmList;
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(MAGIC).putInt(VERSION).putLong(csvStamp[0]).putLong(csvStamp[1])
+                .putLong(logCovered).putInt(crcOf(log, logCovered)).putInt(rows);
+        sealBlock(header);
+
+        ByteBuffer block = ByteBuffer.allocate(4 + BLOCK_ROWS * ROW_BYTES + 4).order(ByteOrder.LITTLE_ENDIAN);
+        AtomicFile.replace(fileFor(csvFile), out -> {
+            out.write(header.array(), 0, header.position());
+            out.write(crmSection.array(), 0, crmSection.position());
+
+            for (int from = 0; from < rows; from += BLOCK_ROWS) {
+                int to = Math.min(rows, from + BLOCK_ROWS);
+                block.clear();
+                block.putInt(to - from);
+                for (int row = from; row < to; row++) block.putInt(appointments.epochDay(row));
+                for (int row = from; row < to; row++) block.putShort((short) appointments.minute(row));
+                for (int row = from; row < to; row++) block.putLong(appointments.cpf(row));
+                for (int row = from; row < to; row++) block.putInt(fileCrms[row]);
+                for (int row = from; row < to; row++) block.put((byte) appointments.status(row).ordinal());
+                for (int row = from; row < to; row++) block.putLong(appointments.id(row));
+                sealBlock(block);
+                out.write(block.array(), 0, block.position());
+            }
+        });
+    }
+
+    /**
+     * Acrescenta ao buffer o CRC32C de tudo o que já foi escrito nele
+     */
+    private static void sealBlock(ByteBuffer buffer) {
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+    }
+
+    /**
+     * Confere o CRC32C gravado logo depois de um trecho do arquivo
+     */
+    private static boolean checksumMatches(ByteBuffer buffer, int start, int length) {
+        if (start + length + 4 > buffer.capacity()) return false;
+
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.duplicate().position(start).limit(start + length));
+        return (int) crc.getValue() == buffer.getInt(start + length);
+    }
+
+    private static int crcOf(byte[] bytes, int length) {
+        CRC32C crc = new CRC32C();
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private static Image invalid(String filename, String part) {
+        System.out.println("Checkpoint de consultas danificado (" + part + ") em " + filename + "; usando o CSV e o log.");
+        return null;
+    }
+}
@@ -0,0 +1,40 @@
+import java.time.Clock;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Relógio usado por todo o sistema para decidir o que é passado e o que é futuro.
+ * Por padrão é o relógio do sistema; pode ser trocado por um relógio fixo
+ * ({@link Clock#fixed}) para testes e simulações.
+ */
+public class AppointmentClock {
+
+    private static volatile Clock clock = Clock.systemDefaultZone();
+
+    /**
+     * Substitui o relógio do sistema
+     *
+     * @param newClock Relógio a usar
+     */
+    public static void setClock(Clock newClock) {
+        clock = newClock;
+    }
+
+    public static Clock getClock() {
+        return clock;
+    }
+
+    /**
+     * @return Data e hora atuais segundo o relógio configurado
+     */
+    public static LocalDateTime now() {
+        return LocalDateTime.now(clock);
+    }
+
+    /**
+     * @return Data atual segundo o relógio configurado
+     */
+    public static LocalDate today() {
+        return LocalDate.now(clock);
+    }
+}
@@ -0,0 +1,486 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+/**
+ * Codificador/decodificador do arquivo appointments.csv.
+ * A leitura mapeia o arquivo em memória (FileChannel + MappedByteBuffer) e decodifica
+ * o layout fixo {@code yyyy-MM-dd,HH:mm,<11 dígitos>,<dígitos>,STATUS[,ID]} byte a byte,
+ * sem criar uma String por linha nem usar expressões regulares ou DateTimeFormatter.
+ * Linhas fora desse layout são repassadas para {@link Appointment#parseLine(String)},
+ * que mantém as mesmas mensagens de erro de antes.
+ * Arquivos grandes são divididos em blocos alinhados em quebras de linha e
+ * decodificados em paralelo no ForkJoinPool comum; a leitura sequencial pode ser
+ * forçada com {@code -Dappointments.sequentialLoad=true}.
+ */
+public class AppointmentCsvCodec {
+
+    /** Tamanho máximo de cada região mapeada (arquivos maiores são lidos em janelas) */
+    private static final int MAX_REGION = 1 << 28;
+
+    /** Tamanho aproximado de uma linha, para reservar a tabela */
+    private static final int BYTES_PER_LINE = 44;
+    /** Reserva inicial máxima da tabela (depois ela cresce): um arquivo enorme não reserva tudo de uma vez */
+    private static final int MAX_INITIAL_ROWS = 1 << 20;
+
+    /** Abaixo deste tamanho a leitura paralela não compensa */
+    private static final int PARALLEL_THRESHOLD = 1 << 20;
+    private static final int MIN_CHUNK = 1 << 18;
+
+    private static volatile boolean parallelLoading = !Boolean.getBoolean("appointments.sequentialLoad");
+
+    private static final byte[] PENDING = bytesOf(AppointmentStatus.PENDING);
+    private static final byte[] COMPLETED = bytesOf(AppointmentStatus.COMPLETED);
+    private static final byte[] CANCELLED = bytesOf(AppointmentStatus.CANCELLED);
+
+    /**
+     * Lê todas as consultas de um arquivo CSV (o cabeçalho é ignorado)
+     *
+     * @param filename Nome do arquivo CSV
+     * @return Tabela de consultas na ordem do arquivo
+     * @throws IOException se ocorrer erro ao ler o arquivo
+     */
+    public static AppointmentTable read(String filename) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(filename), StandardOpenOption.READ)) {
+            long size = channel.size();
+            AppointmentTable appointments = new AppointmentTable((int) Math.min(size / BYTES_PER_LINE + 1, MAX_INITIAL_ROWS));
+            long position = 0;
+            boolean skipHeader = true;
+            boolean parallel = parallelLoading && size >= PARALLEL_THRESHOLD
+                    && ForkJoinPool.getCommonPoolParallelism() > 1;
+
+            while (position < size) {
+                int length = (int) Math.min(MAX_REGION, size - position);
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+                boolean atEnd = position + length == size;
+
+                int consumed = parallel
+                        ? decodeParallel(buffer, length, atEnd, skipHeader, appointments)
+                        : decodeLines(buffer, 0, length, atEnd, skipHeader, appointments, null);
+                if (consumed == 0) {
+                    throw new IOException("Linha maior que a região mapeada na posição " + position);
+                }
+
+                skipHeader = false;
+                position += consumed;
+            }
+
+            return appointments;
+        }
+    }
+
+    /**
+     * Liga ou desliga a leitura paralela (o padrão vem da propriedade
+     * {@code appointments.sequentialLoad})
+     *
+     * @param enabled true para dividir arquivos grandes entre os núcleos, false para ler sequencialmente
+     */
+    public static void setParallelLoading(boolean enabled) {
+        parallelLoading = enabled;
+    }
+
+    /**
+     * Decodifica uma região em blocos paralelos e junta os resultados na ordem do arquivo.
+     * As linhas fora do layout não são analisadas nos blocos: elas são guardadas e passadas
+     * ao parser original na thread chamadora, durante a junção, para que as mensagens de
+     * erro saiam na mesma ordem da leitura sequencial.
+     *
+     * @return Quantidade de bytes consumidos da região
+     */
+    private static int decodeParallel(ByteBuffer buffer, int length, boolean atEnd, boolean skipHeader, AppointmentTable out) {
+        // Sem o fim do arquivo, a região termina na última quebra de linha
+        int end = length;
+        if (!atEnd) {
+            end = lastIndexOf(buffer, (byte) '\n', length) + 1;
+            if (end == 0) return 0;
+        }
+
+        int parallelism = ForkJoinPool.getCommonPoolParallelism();
+        int chunkSize = Math.max(MIN_CHUNK, end / (parallelism * 4) + 1);
+
+        List<ForkJoinTask<Chunk>> tasks = new ArrayList<>();
+        int chunkStart = 0;
+        while (chunkStart < end) {
+            int chunkEnd = end;
+            if (end - chunkStart > chunkSize) {
+                int newline = indexOf(buffer, (byte) '\n', chunkStart + chunkSize, end);
+                chunkEnd = newline < 0 ? end : newline + 1;
+            }
+
+            int start = chunkStart;
+            int stop = chunkEnd;
+            boolean header = skipHeader && start == 0;
+            tasks.add(ForkJoinPool.commonPool().submit(() -> {
+                Chunk chunk = new Chunk((stop - start) / BYTES_PER_LINE + 1);
+                decodeLines(buffer, start, stop, true, header, chunk.table, chunk);
+                return chunk;
+            }));
+
+            chunkStart = chunkEnd;
+        }
+
+        // Com os blocos prontos, o total de linhas é conhecido: a tabela cresce uma única vez
+        List<Chunk> chunks = new ArrayList<>(tasks.size());
+        int rows = 0;
+        for (ForkJoinTask<Chunk> task : tasks) {
+            Chunk chunk = task.join();
+            chunks.add(chunk);
+            rows += chunk.table.size() + chunk.deferredLines.size();
+        }
+        out.ensureCapacity(out.size() + rows);
+        for (Chunk chunk : chunks) {
+            chunk.mergeInto(out);
+        }
+        return end;
+    }
+
+    /**
+     * Resultado de um bloco: linhas decodificadas e linhas adiadas, com a posição
+     * (na tabela do bloco) em que cada uma apareceu
+     */
+    private static class Chunk {
+        final AppointmentTable table;
+        final List<String> deferredLines = new ArrayList<>();
+        final List<Integer> deferredRows = new ArrayList<>();
+
+        Chunk(int capacity) {
+            table = new AppointmentTable(capacity);
+        }
+
+        void defer(String line) {
+            deferredLines.add(line);
+            deferredRows.add(table.size());
+        }
+
+        void mergeInto(AppointmentTable out) {
+            int from = 0;
+            for (int i = 0; i < deferredLines.size(); i++) {
+                int at = deferredRows.get(i);
+                out.appendRows(table, from, at);
+                from = at;
+
+                Appointment appointment = Appointment.parseLine(deferredLines.get(i));
+                if (appointment != null) {
+                    out.add(appointment);
+                }
+            }
+            out.appendRows(table, from, table.size());
+        }
+    }
+
+    /**
+     * Decodifica as linhas completas de um trecho do buffer
+     *
+     * @param buffer Buffer com o conteúdo do arquivo
+     * @param start Posição inicial (início de uma linha)
+     * @param end Posição final (exclusiva)
+     * @param atEnd Se true, o trecho termina no fim do arquivo e a última linha pode não ter quebra
+     * @param skipHeader Se true, a primeira linha do trecho é o cabeçalho
+     * @param out Tabela que recebe as consultas decodificadas
+     * @param deferred Se informado, recebe as linhas fora do layout em vez de analisá-las imediatamente
+     * @return Quantidade de bytes consumidos a partir de start
+     */
+    static int decodeLines(ByteBuffer buffer, int start, int end, boolean atEnd, boolean skipHeader,
+                           AppointmentTable out, Chunk deferred) {
+        CrmCodes crms = new CrmCodes();
+        int lineStart = start;
+
+        while (lineStart < end) {
+            int newline = indexOf(buffer, (byte) '\n', lineStart, end);
+            if (newline < 0 && !atEnd) {
+                break; // linha incompleta: fica para a próxima região
+            }
+
+            int lineEnd = newline < 0 ? end : newline;
+            int next = newline < 0 ? end : newline + 1;
+            if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                lineEnd--;
+            }
+
+            if (skipHeader) {
+                skipHeader = false;
+            } else {
+                if (!decodeLine(buffer, lineStart, lineEnd, out, crms)) {
+                    String line = textOf(buffer, lineStart, lineEnd);
+                    if (!line.isEmpty() && deferred != null) {
+                        deferred.defer(line);
+                    } else if (!line.isEmpty()) {
+                        Appointment appointment = Appointment.parseLine(line);
+                        if (appointment != null) {
+                            out.add(appointment);
+                        }
+                    }
+                }
+            }
+
+            lineStart = next;
+        }
+
+        return lineStart - start;
+    }
+
+    /**
+     * Decodifica uma linha no layout fixo, incluindo-a na tabela
+     *
+     * @param crms Códigos de CRM já vistos neste trecho
+     * @return true se a linha foi incluída, false se ela não seguir o layout
+     */
+    static boolean decodeLine(ByteBuffer buffer, int start, int end, AppointmentTable out, CrmCodes crms) {
+        // yyyy-MM-dd,HH:mm,CPF(11), + CRM(1+)
+        if (end - start < 30) return false;
+
+        int year = digits(buffer, start, 4);
+        int month = digits(buffer, start + 5, 2);
+        int day = digits(buffer, start + 8, 2);
+        int hour = digits(buffer, start + 11, 2);
+        int minute = digits(buffer, start + 14, 2);
+        if (year < 0 || month < 0 || day < 0 || hour < 0 || minute < 0) return false;
+        if (hour > 23 || minute > 59) return false;
+
+        if (buffer.get(start + 4) != '-' || buffer.get(start + 7) != '-' || buffer.get(start + 10) != ','
+                || buffer.get(start + 13) != ':' || buffer.get(start + 16) != ',' || buffer.get(start + 28) != ',') {
+            return false;
+        }
+
+        int cpfStart = start + 17;
+        long cpf = parseLong(buffer, cpfStart, cpfStart + 11);
+        if (cpf < 0) return false;
+
+        int crmStart = start + 29;
+        int crmEnd = indexOf(buffer, (byte) ',', crmStart, end);
+        if (crmEnd < 0) crmEnd = end;
+        if (crmEnd == crmStart || !allDigits(buffer, crmStart, crmEnd)) return false;
+
+        AppointmentStatus status = AppointmentStatus.PENDING;
+        long id = 0;
+
+        if (crmEnd < end) {
+            int statusStart = crmEnd + 1;
+            int statusEnd = indexOf(buffer, (byte) ',', statusStart, end);
+            if (statusEnd < 0) statusEnd = end;
+
+            status = decodeStatus(buffer, statusStart, statusEnd);
+            if (status == null) return false;
+
+            if (statusEnd < end) {
+                id = parseLong(buffer, statusEnd + 1, end);
+                if (id <= 0) return false;
+            }
+        }
+
+        int epochDay;
+        try {
+            epochDay = (int) LocalDate.of(year, month, day).toEpochDay();
+        } catch (DateTimeException e) {
+            return false;
+        }
+
+        out.append(epochDay, hour * 60 + minute, cpf, crms.codeOf(buffer, crmStart, crmEnd), status, id);
+        return true;
+    }
+
+    /**
+     * Códigos de CRM já vistos por um trecho da leitura, pelos dígitos do CRM compactados
+     * em um long (como {@link PatientIndex#pack} faz com o CPF). A String do CRM só é
+     * criada na primeira vez que ele aparece no trecho; nas outras linhas o código sai
+     * direto dos bytes. Cada trecho tem a sua tabela, então não há trava na leitura paralela.
+     */
+    static final class CrmCodes {
+        /** Dígitos que cabem na chave junto com o tamanho */
+        private static final int MAX_DIGITS = 17;
+
+        private long[] keys = new long[32]; // 0 = posição livre (toda chave tem tamanho >= 1)
+        private int[] codes = new int[32];
+        private int size = 0;
+
+        /**
+         * @param buffer Buffer com o conteúdo do arquivo
+         * @param start Início do CRM (somente dígitos)
+         * @param end Fim do CRM (exclusivo)
+         * @return Código do CRM no dicionário de {@link AppointmentTable}
+         */
+        int codeOf(ByteBuffer buffer, int start, int end) {
+            if (end - start > MAX_DIGITS) {
+                return AppointmentTable.crmCode(ascii(buffer, start, end));
+            }
+
+            // O tamanho entra na chave: "0123" e "123" são CRMs diferentes
+            long value = 0;
+            for (int i = start; i < end; i++) {
+                value = value * 10 + (buffer.get(i) - '0');
+            }
+            long key = value << 5 | (end - start);
+
+            int mask = keys.length - 1;
+            int slot = hash(key) & mask;
+            while (keys[slot] != 0) {
+                if (keys[slot] == key) return codes[slot];
+                slot = (slot + 1) & mask;
+            }
+
+            int code = AppointmentTable.crmCode(ascii(buffer, start, end));
+            keys[slot] = key;
+            codes[slot] = code;
+            if (++size * 2 > keys.length) {
+                resize();
+            }
+            return code;
+        }
+
+        private void resize() {
+            long[] oldKeys = keys;
+            int[] oldCodes = codes;
+            keys = new long[oldKeys.length << 1];
+            codes = new int[oldKeys.length << 1];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == 0) continue;
+                int slot = hash(oldKeys[i]) & mask;
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                codes[slot] = oldCodes[i];
+            }
+        }
+
+        private static int hash(long key) {
+            long h = key * 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 32));
+        }
+    }
+
+    /**
+     * Texto de uma linha fora do layout, para o parser original
+     */
+    private static String textOf(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.UTF_8).trim();
+    }
+
+    /**
+     * Codifica uma consulta no formato do CSV (espelho de {@link #decodeLine})
+     *
+     * @param appointment Consulta a codificar
+     * @return Linha do CSV, sem quebra de linha
+     */
+    public static String encode(Appointment appointment) {
+        StringBuilder line = new StringBuilder(48);
+        encode(appointment, line);
+        return line.toString();
+    }
+
+    /**
+     * Codifica uma consulta no formato do CSV, anexando ao StringBuilder informado
+     *
+     * @param appointment Consulta a codificar
+     * @param line StringBuilder que recebe a linha (sem quebra de linha)
+     */
+    public static void encode(Appointment appointment, StringBuilder line) {
+        LocalDate date = appointment.getDate();
+        LocalTime time = appointment.getTime();
+
+        appendPadded(line, date.getYear(), 4).append('-');
+        appendPadded(line, date.getMonthValue(), 2).append('-');
+        appendPadded(line, date.getDayOfMonth(), 2).append(',');
+        appendPadded(line, time.getHour(), 2).append(':');
+        appendPadded(line, time.getMinute(), 2).append(',');
+        line.append(appointment.getPatientCPF()).append(',')
+                .append(appointment.getDoctorCRM()).append(',')
+                .append(appointment.getStatus().name()).append(',')
+                .append(appointment.getId());
+    }
+
+    private static StringBuilder appendPadded(StringBuilder line, int value, int width) {
+        for (int limit = 10, i = 1; i < width; i++, limit *= 10) {
+            if (value < limit) line.append('0');
+        }
+        return line.append(value);
+    }
+
+    private static AppointmentStatus decodeStatus(ByteBuffer buffer, int start, int end) {
+        if (matches(buffer, start, end, PENDING)) return AppointmentStatus.PENDING;
+        if (matches(buffer, start, end, COMPLETED)) return AppointmentStatus.COMPLETED;
+        if (matches(buffer, start, end, CANCELLED)) return AppointmentStatus.CANCELLED;
+        return null;
+    }
+
+    private static boolean matches(ByteBuffer buffer, int start, int end, byte[] expected) {
+        if (end - start != expected.length) return false;
+        for (int i = 0; i < expected.length; i++) {
+            if (buffer.get(start + i) != expected[i]) return false;
+        }
+        return true;
+    }
+
+    /**
+     * Lê um número de tamanho fixo
+     *
+     * @return Valor lido ou -1 se houver algum caractere que não é dígito
+     */
+    private static int digits(ByteBuffer buffer, int start, int count) {
+        if (count > 9) return -1;
+        int value = 0;
+        for (int i = start; i < start + count; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static long parseLong(ByteBuffer buffer, int start, int end) {
+        if (end == start || end - start > 18) return -1;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            int digit = buffer.get(i) - '0';
+            if (digit < 0 || digit > 9) return -1;
+            value = value * 10 + digit;
+        }
+        return value;
+    }
+
+    private static boolean allDigits(ByteBuffer buffer, int start, int end) {
+        for (int i = start; i < end; i++) {
+            byte b = buffer.get(i);
+            if (b < '0' || b > '9') return false;
+        }
+        return true;
+    }
+
+    static int indexOf(ByteBuffer buffer, byte value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            if (buffer.get(i) == value) return i;
+        }
+        return -1;
+    }
+
+    private static int lastIndexOf(ByteBuffer buffer, byte value, int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (buffer.get(i) == value) return i;
+        }
+        return -1;
+    }
+
+    private static String ascii(ByteBuffer buffer, int start, int end) {
+        byte[] bytes = new byte[end - start];
+        buffer.get(start, bytes);
+        return new String(bytes, StandardCharsets.US_ASCII);
+    }
+
+    private static byte[] bytesOf(AppointmentStatus status) {
+        return status.name().getBytes(StandardCharsets.US_ASCII);
+    }
+}
@@ -0,0 +1,756 @@
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.CRC32C;
+
+/**
+ * Log de alterações (somente anexação) das consultas.
+ * Cada agendamento, cancelamento ou remarcação é gravado como uma linha curta
+ * ao lado do snapshot appointments.csv, em vez de reescrever o arquivo inteiro.
+ * O carregamento aplica o log sobre o snapshot e um compactador em segundo plano
+ * incorpora o log ao snapshot quando ele fica grande.
+ *
+ * Formato das linhas (as consultas são referenciadas pelo identificador):
+ * <pre>
+ * CREATE,yyyy-MM-dd,HH:mm,CPF,CRM,STATUS,ID
+ * CANCEL,ID
+ * RESCHEDULE,ID,novaData,novoHorario
+ * COMPLETE,ID
+ * </pre>
+ * O log é sempre gravado e lido em UTF-8, qualquer que seja a localidade do sistema.
+ * Cada linha termina com {@code #} e o CRC32C do registro em hexadecimal; um registro
+ * cortado por uma queda no meio da gravação, ou danificado depois, não confere com o CRC
+ * e é ignorado na leitura em vez de alterar a consulta errada.
+ * Registros sem CRC continuam sendo aceitos na leitura.
+ *
+ * O carregamento parte do checkpoint binário ({@link AppointmentCheckpoint}) quando ele
+ * ainda corresponde ao CSV e ao log, e aplica só a parte do log que ele não cobre.
+ * Aplicar de novo um registro já incorporado ao snapshot não muda nada, então uma queda
+ * entre a troca do snapshot e o esvaziamento do log não duplica consultas.
+ *
+ * O log também guarda o estado dos arquivos (data de modificação e tamanho do snapshot
+ * e do log) depois de cada leitura ou gravação feita por este processo, para saber se
+ * outro processo alterou as consultas e a lista em memória precisa ser relida, e a posição
+ * do log até a qual a memória está sincronizada: quando outro processo só acrescentou
+ * registros, basta ler o final do log ({@link #readTail}).
+ */
+public class AppointmentLog {
+
+    private static final String CREATE = "CREATE";
+    private static final String CANCEL = "CANCEL";
+    private static final String RESCHEDULE = "RESCHEDULE";
+    private static final String COMPLETE = "COMPLETE";
+
+    /** Quantidade de registros no log que dispara a compactação em segundo plano */
+    private static final int COMPACTION_THRESHOLD = 500;
+    /** Codificação do log na gravação, na leitura e no CRC, independente da localidade */
+    private static final Charset LOG_CHARSET = StandardCharsets.UTF_8;
+
+    private static final DateTimeFormatter DATE_FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter TIME_FORMATTER = DateTimeFormatter.ofPattern("HH:mm");
+
+    /** Compactador em segundo plano (thread daemon para não segurar o encerramento) */
+    private static final ExecutorService COMPACTOR = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "appointment-log-compactor");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /** Registros pendentes de compactação por arquivo de snapshot */
+    private static final Map<String, Integer> pendingEntries = new HashMap<>();
+    /** Snapshots com consultas que já deveriam estar no arquivo mensal ({@link AppointmentArchive}) */
+    private static final Set<String> archiveDue = new HashSet<>();
+
+    /** Estado dos arquivos conhecido por este processo, por arquivo de snapshot */
+    private static final Map<String, long[]> knownStamps = new HashMap<>();
+    /** Snapshots alterados por outro processo desde a última leitura */
+    private static final Set<String> externallyChanged = new HashSet<>();
+    /** Posição do log até a qual as consultas em memória estão sincronizadas, por snapshot */
+    private static final Map<String, Long> syncedPositions = new HashMap<>();
+    /** Trechos gravados por este processo depois de registros de outro processo ainda não lidos */
+    private static final Map<String, List<long[]>> ownRanges = new HashMap<>();
+    /** Gravações deste processo enfileiradas e ainda não anotadas */
+    private static final Map<String, Integer> inFlight = new HashMap<>();
+
+    /**
+     * Alteração lida do final do log
+     */
+    static final class Change {
+        final String type;
+        final long id;
+        final Appointment created;   // CREATE
+        final LocalDate date;        // RESCHEDULE
+        final LocalTime time;        // RESCHEDULE
+
+        private Change(String type, long id, Appointment created, LocalDate date, LocalTime time) {
+            this.type = type;
+            this.id = id;
+            this.created = created;
+            this.date = date;
+            this.time = time;
+        }
+
+        boolean isCreate() {
+            return CREATE.equals(type);
+        }
+
+        boolean isCancel() {
+            return CANCEL.equals(type);
+        }
+
+        boolean isComplete() {
+            return COMPLETE.equals(type);
+        }
+
+        boolean isReschedule() {
+            return RESCHEDULE.equals(type);
+        }
+    }
+
+    /**
+     * Retorna o nome do arquivo de log associado a um snapshot CSV
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @return Nome do arquivo de log (ex: appointments.log)
+     */
+    public static String logFileFor(String csvFile) {
+        int dot = csvFile.lastIndexOf('.');
+        String base = dot > 0 ? csvFile.substring(0, dot) : csvFile;
+        return base + ".log";
+    }
+
+    /**
+     * Registra o agendamento de uma nova consulta
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param appointment Consulta criada
+     * @throws IOException se ocorrer erro ao escrever no log
+     */
+    public static void appendCreate(String csvFile, Appointment appointment) throws IOException {
+        append(csvFile, CREATE + "," + appointment.toCSVFormat());
+    }
+
+    /**
+     * Registra o cancelamento de uma consulta
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param appointment Consulta cancelada
+     * @throws IOException se ocorrer erro ao escrever no log
+     */
+    public static void appendCancel(String csvFile, Appointment appointment) throws IOException {
+        append(csvFile, CANCEL + "," + appointment.getId());
+    }
+
+    /**
+     * Registra a remarcação de uma consulta
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param appointment Consulta remarcada
+     * @param newDate Nova data
+     * @param newTime Novo horário
+     * @throws IOException se ocorrer erro ao escrever no log
+     */
+    public static void appendReschedule(String csvFile, Appointment appointment, LocalDate newDate, LocalTime newTime) throws IOException {
+        append(csvFile, RESCHEDULE + "," + appointment.getId() + "," +
+                newDate.format(DATE_FORMATTER) + "," +
+                newTime.format(TIME_FORMATTER));
+    }
+
+    /**
+     * Registra, em um único acesso ao arquivo, as consultas que passaram a realizadas
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param appointments Consultas concluídas
+     * @throws IOException se ocorrer erro ao escrever no log
+     */
+    public static void appendComplete(String csvFile, List<Appointment> appointments) throws IOException {
+        List<String> records = new ArrayList<>(appointments.size());
+        for (Appointment appointment : appointments) {
+            records.add(COMPLETE + "," + appointment.getId());
+        }
+        append(csvFile, records);
+    }
+
+    private static void append(String csvFile, String record) throws IOException {
+        append(csvFile, Collections.singletonList(record));
+    }
+
+    /**
+     * Anexa linhas ao log e agenda a compactação se o limite for atingido.
+     * A trava da classe só é usada para enfileirar e para anotar o resultado: a espera
+     * pela gravação fica fora dela, para que os registros de outras threads entrem no mesmo lote.
+     */
+    private static void append(String csvFile, List<String> records) throws IOException {
+        if (records.isEmpty()) return;
+
+        GroupCommitWriter writer = GroupCommitWriter.forFile(logFileFor(csvFile), LOG_CHARSET);
+        CompletableFuture<long[]> written;
+        synchronized (AppointmentLog.class) {
+            checkExternalChange(csvFile);
+            List<String> lines = new ArrayList<>(records.size());
+            for (String record : records) {
+                lines.add(seal(record));
+            }
+            written = writer.append(lines);
+            inFlight.merge(csvFile, 1, Integer::sum);
+        }
+
+        long[] range = null;
+        try {
+            range = writer.await(written);
+        } finally {
+            appended(csvFile, range, records.size());
+        }
+    }
+
+    /**
+     * Anota uma gravação terminada (range null se ela falhou) e libera quem espera por ela
+     */
+    private static synchronized void appended(String csvFile, long[] range, int records) {
+        if (range != null) {
+            Long synced = syncedPositions.get(csvFile);
+            if (synced != null && synced == range[0]) {
+                syncedPositions.put(csvFile, range[1]);
+            } else if (synced != null && synced < range[1]) {
+                // Há registros de outro processo antes destes: a leitura do final deve pulá-los
+                // e ler os outros
+                ownRanges.computeIfAbsent(csvFile, key -> new ArrayList<>()).add(range);
+                externallyChanged.add(csvFile);
+            }
+        }
+        rememberStamp(csvFile);
+
+        if (inFlight.merge(csvFile, -1, Integer::sum) <= 0) {
+            inFlight.remove(csvFile);
+            AppointmentLog.class.notifyAll();
+        }
+
+        if (range != null) {
+            int pending = pendingEntries.merge(csvFile, records, Integer::sum);
+            if (pending >= COMPACTION_THRESHOLD) {
+                pendingEntries.put(csvFile, 0);
+                scheduleCompaction(csvFile);
+            }
+        }
+    }
+
+    /**
+     * Espera as gravações deste processo já enfileiradas serem anotadas, antes de usar
+     * as posições do log (chamado com a trava da classe, que é liberada durante a espera)
+     */
+    private static void awaitAppends(String csvFile) {
+        while (inFlight.containsKey(csvFile)) {
+            try {
+                AppointmentLog.class.wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Carrega as consultas: do checkpoint, se ele ainda corresponder ao CSV e ao log,
+     * ou do snapshot CSV; depois aplica a parte do log que o ponto de partida não cobre.
+     * Sem checkpoint válido, um novo é gravado em segundo plano para a próxima inicialização.
+     * Se o snapshot ainda tem histórico anterior à janela recente, ele é arquivado (com uma
+     * compactação) antes de carregar: a lista devolvida nunca contém consultas arquivadas.
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @return Consultas carregadas
+     */
+    public static synchronized List<Appointment> load(String csvFile) {
+        awaitAppends(csvFile);
+        long[] stamp = stampOf(csvFile);
+        long[] csvStamp = {stamp[0], stamp[1]};
+        byte[] log = readLog(csvFile);
+        AppointmentCheckpoint.Image image = restore(csvFile, csvStamp, log);
+        AppointmentTable appointments = image.appointments;
+        int end = replay(csvFile, appointments, log, image.logCovered);
+
+        // Registros gravados entre markSeen e a leitura já foram aplicados
+        if (syncedPositions.containsKey(csvFile)) {
+            syncedPositions.put(csvFile, (long) end);
+        }
+
+        // Histórico antigo ainda no snapshot: é arquivado antes de a lista ser devolvida, pois os
+        // índices somam o resumo do arquivo e contariam duas vezes as consultas que ficassem na lista.
+        // A compactação aproveita o que acabou de ser lido e devolve o que ficou no snapshot
+        if (AppointmentArchive.hasCold(appointments)) {
+            archiveDue.add(csvFile);
+            AppointmentTable kept = compact(csvFile, new AppointmentCheckpoint.Image(appointments, end, false), stamp);
+            if (kept != null) {
+                return kept;
+            }
+        }
+
+        if (!image.fromCheckpoint && Arrays.equals(csvStamp, csvStampOf(csvFile))) {
+            AppointmentTable copy = new AppointmentTable(appointments.size());
+            copy.appendRows(appointments, 0, appointments.size());
+            COMPACTOR.submit(() -> writeCheckpoint(csvFile, copy, csvStamp, log, end));
+        }
+        return appointments;
+    }
+
+    /**
+     * Aplica o log sobre a lista de consultas carregada do snapshot
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @param appointments Consultas do snapshot (alteradas no próprio objeto)
+     */
+    public static synchronized void replay(String csvFile, List<Appointment> appointments) {
+        replay(csvFile, appointments, readLog(csvFile), 0);
+    }
+
+    /**
+     * Aplica os registros do log a partir de uma posição
+     *
+     * @param log Conteúdo do log
+     * @param from Posição do primeiro registro ainda não aplicado
+     * @return Posição logo depois do último registro completo
+     */
+    private static int replay(String csvFile, List<Appointment> appointments, byte[] log, int from) {
+        // Índice id -> consulta, para aplicar cada registro em O(1)
+        Map<Long, Appointment> byId = new HashMap<>();
+        for (Appointment appointment : appointments) {
+            byId.put(appointment.getId(), appointment);
+        }
+
+        int appliedCount = 0;
+        int start = from;
+        for (int end = indexOf(log, start); end >= 0; end = indexOf(log, start)) {
+            String line = new String(log, start, end - start, LOG_CHARSET).trim();
+            start = end + 1;
+            if (line.isEmpty()) continue;
+
+            String record = unseal(line);
+            if (record == null) {
+                System.out.println("Registro danificado no log de consultas (ignorado): " + line);
+                continue;
+            }
+
+            if (applyRecord(record, appointments, byId) != null) {
+                appliedCount++;
+            } else {
+                System.out.println("Registro inválido no log de consultas: " + line);
+            }
+        }
+
+        if (!new String(log, start, log.length - start, LOG_CHARSET).trim().isEmpty()) {
+            System.out.println("Registro incompleto no final do log de consultas (ignorado).");
+        }
+
+        // O trecho coberto pelo checkpoint também conta para a compactação
+        int covered = 0;
+        for (int i = 0; i < from; i++) {
+            if (log[i] == '\n') covered++;
+        }
+        pendingEntries.put(csvFile, covered + appliedCount);
+        return start;
+    }
+
+    /**
+     * Aplica um único registro do log
+     *
+     * @return Consulta afetada pelo registro ou null se o registro for inválido
+     */
+    private static Appointment applyRecord(String line, List<Appointment> appointments, Map<Long, Appointment> byId) {
+        int comma = line.indexOf(',');
+        if (comma < 0) return null;
+
+        String type = line.substring(0, comma);
+        String payload = line.substring(comma + 1);
+        String[] parts = payload.split(",");
+
+        try {
+            switch (type) {
+                case CREATE: {
+                    Appointment created = Appointment.parseLine(payload);
+                    if (created == null || created.getId() == 0) return null;
+
+                    // Já incorporada ao snapshot (queda antes de esvaziar o log): mantém o estado do snapshot
+                    Appointment existing = byId.get(created.getId());
+                    if (existing != null && existing.getPatientCPF().equals(created.getPatientCPF())
+                            && existing.getDoctorCRM().equals(created.getDoctorCRM())) {
+                        return existing;
+                    }
+                    appointments.add(created);
+                    byId.put(created.getId(), created);
+                    return created;
+                }
+                case CANCEL: {
+                    Appointment target = byId.get(Long.parseLong(parts[0]));
+                    if (target == null) return null;
+                    target.setStatus(AppointmentStatus.CANCELLED);
+                    return target;
+                }
+                case COMPLETE: {
+                    Appointment target = byId.get(Long.parseLong(parts[0]));
+                    if (target == null) return null;
+                    target.setStatus(AppointmentStatus.COMPLETED);
+                    return target;
+                }
+                case RESCHEDULE: {
+                    Appointment target = byId.get(Long.parseLong(parts[0]));
+                    if (target == null || parts.length < 3) return null;
+
+                    target.moveTo(LocalDate.parse(parts[1], DATE_FORMATTER), LocalTime.parse(parts[2], TIME_FORMATTER));
+                    return target;
+                }
+                default:
+                    return null;
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Incorpora o log ao snapshot: move o histórico antigo para os segmentos mensais
+     * ({@link AppointmentArchive}), grava o estado atual em um arquivo temporário,
+     * substitui o CSV de forma atômica, grava o checkpoint do novo CSV e troca o log por
+     * um vazio, também de forma atômica. Uma queda em qualquer ponto deixa um CSV inteiro
+     * e um log que, reaplicado sobre ele, leva ao mesmo estado.
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     */
+    public static synchronized void compact(String csvFile) {
+        compact(csvFile, null, null);
+    }
+
+    /**
+     * Compactação com a trava do log ({@link GroupCommitWriter#lockCurrent}) do começo ao fim:
+     * outros processos esperam por ela para anexar ou compactar, então nada chega ao log entre
+     * a leitura e a troca. As gravações deste processo já esperam pela trava da classe.
+     *
+     * @param loaded Consultas já lidas pelo chamador, com o log aplicado até logCovered
+     *               (usadas se os arquivos não mudaram desde então), ou null para ler de novo
+     * @param loadedStamp Estado dos arquivos antes da leitura do chamador
+     * @return Consultas que ficaram no snapshot ou null se nada foi compactado
+     */
+    private static AppointmentTable compact(String csvFile, AppointmentCheckpoint.Image loaded, long[] loadedStamp) {
+        File logFile = new File(logFileFor(csvFile));
+        if ((!logFile.exists() || logFile.length() == 0) && !archiveDue.contains(csvFile)) {
+            return null;
+        }
+
+        awaitAppends(csvFile);
+        AppointmentTable kept = null;
+        FileLock lock = null;
+        try {
+            lock = GroupCommitWriter.lockCurrent(logFileFor(csvFile));
+            checkExternalChange(csvFile);
+
+            byte[] log = readLog(lock.channel());
+            AppointmentTable appointments;
+            int end;
+            // O log travado pode ter acabado de ser criado vazio: do log, só o tamanho conta
+            long[] current = stampOf(csvFile);
+            if (loaded != null && loadedStamp[0] == current[0] && loadedStamp[1] == current[1]
+                    && loadedStamp[3] == current[3]) {
+                appointments = loaded.appointments;
+                end = loaded.logCovered;
+            } else {
+                AppointmentCheckpoint.Image image = restore(csvFile, csvStampOf(csvFile), log);
+                appointments = image.appointments;
+                end = replay(csvFile, appointments, log, image.logCovered);
+            }
+
+            kept = appointments;
+            try {
+                kept = AppointmentArchive.archive(csvFile, appointments);
+                archiveDue.remove(csvFile);
+            } catch (IOException e) {
+                // O histórico continua no snapshot até a próxima compactação
+                System.out.println("Erro ao arquivar o histórico de consultas: " + e.getMessage());
+            }
+
+            long[] written = Appointment.writeSnapshot(kept, csvFile);
+            writeCheckpoint(csvFile, kept, written, new byte[0], 0);
+
+            // O snapshot já contém o log lido; só uma linha incompleta no final (queda no meio
+            // de uma gravação) passa para o novo log
+            int from = end;
+            AtomicFile.replace(logFileFor(csvFile), out -> out.write(log, from, log.length - from));
+            pendingEntries.put(csvFile, 0);
+
+            // Alterações de outro processo foram para o snapshot sem passar pela memória:
+            // a próxima sincronização precisa reler tudo
+            if (externallyChanged.contains(csvFile)) {
+                syncedPositions.remove(csvFile);
+            } else if (syncedPositions.containsKey(csvFile)) {
+                syncedPositions.put(csvFile, 0L);
+            }
+            ownRanges.remove(csvFile);
+        } catch (IOException e) {
+            System.out.println("Erro ao compactar o log de consultas: " + e.getMessage());
+        } finally {
+            if (lock != null) {
+                try {
+                    lock.channel().close();
+                } catch (IOException ignored) {
+                    // Fechar o canal já libera a trava
+                }
+            }
+            rememberStamp(csvFile);
+        }
+        return kept;
+    }
+
+    /**
+     * Ponto de partida do carregamento: o checkpoint, se valer para o CSV e o log atuais,
+     * ou o snapshot CSV (sem nada do log aplicado)
+     */
+    private static AppointmentCheckpoint.Image restore(String csvFile, long[] csvStamp, byte[] log) {
+        AppointmentCheckpoint.Image image = AppointmentCheckpoint.read(csvFile, csvStamp, log);
+        if (image != null) return image;
+        return new AppointmentCheckpoint.Image(AppointmentTable.of(Appointment.loadSnapshot(csvFile)), 0, false);
+    }
+
+    /**
+     * Grava o checkpoint, a menos que o CSV tenha sido trocado enquanto isso
+     */
+    private static void writeCheckpoint(String csvFile, AppointmentTable appointments, long[] csvStamp, byte[] log, int logCovered) {
+        if (!Arrays.equals(csvStamp, csvStampOf(csvFile))) return;
+        try {
+            AppointmentCheckpoint.write(csvFile, appointments, csvStamp, log, logCovered);
+        } catch (IOException e) {
+            System.out.println("Erro ao gravar o checkpoint de consultas: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Conteúdo atual do log (vazio se ele não existir)
+     */
+    private static byte[] readLog(String csvFile) {
+        try {
+            return Files.readAllBytes(Paths.get(logFileFor(csvFile)));
+        } catch (NoSuchFileException e) {
+            return new byte[0];
+        } catch (IOException e) {
+            System.out.println("Erro ao ler o log de consultas: " + e.getMessage());
+            return new byte[0];
+        }
+    }
+
+    /**
+     * Conteúdo do log travado, lido pelo canal da trava (abrir e fechar outro canal no
+     * arquivo liberaria a trava)
+     */
+    private static byte[] readLog(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) channel.size());
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) break;
+        }
+        return buffer.array();
+    }
+
+    private static int indexOf(byte[] bytes, int from) {
+        for (int i = from; i < bytes.length; i++) {
+            if (bytes[i] == '\n') return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Acrescenta ao registro o CRC32C que permite detectar uma gravação incompleta
+     */
+    private static String seal(String record) {
+        CRC32C crc = new CRC32C();
+        crc.update(record.getBytes(LOG_CHARSET));
+        String hex = Long.toHexString(crc.getValue());
+        return record + "#" + "00000000".substring(hex.length()) + hex;
+    }
+
+    /**
+     * Confere o CRC32C de uma linha do log
+     *
+     * @return Registro sem o CRC ou null se ele não conferir (registros sem CRC são aceitos como estão)
+     */
+    private static String unseal(String line) {
+        int mark = line.lastIndexOf('#');
+        if (mark < 0) return line;
+
+        String record = line.substring(0, mark);
+        return line.length() - mark == 9 && seal(record).equals(line) ? record : null;
+    }
+
+    /**
+     * Registra que as consultas estão sendo lidas do snapshot e do log neste momento
+     * (chamado antes da leitura: uma gravação durante a leitura conta como alteração)
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     */
+    public static synchronized void markSeen(String csvFile) {
+        externallyChanged.remove(csvFile);
+        ownRanges.remove(csvFile);
+        rememberStamp(csvFile);
+        syncedPositions.put(csvFile, knownStamps.get(csvFile)[3]);
+    }
+
+    /**
+     * Lê as alterações que outro processo acrescentou ao log desde a última sincronização,
+     * sem reler o snapshot nem o início do log. Registros gravados por este processo
+     * (já aplicados em memória) são pulados; uma linha ainda incompleta fica para a próxima leitura.
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @return Alterações na ordem do log ou null se for preciso reler tudo
+     *         (snapshot substituído, log esvaziado ou registro inválido)
+     */
+    static synchronized List<Change> readTail(String csvFile) {
+        awaitAppends(csvFile);
+        long[] known = knownStamps.get(csvFile);
+        Long synced = syncedPositions.get(csvFile);
+        long[] current = stampOf(csvFile);
+        if (known == null || synced == null || known[0] != current[0] || known[1] != current[1] || current[3] < synced) {
+            return null;
+        }
+
+        byte[] tail = new byte[(int) (current[3] - synced)];
+        try (RandomAccessFile log = new RandomAccessFile(logFileFor(csvFile), "r")) {
+            log.seek(synced);
+            log.readFully(tail);
+        } catch (IOException e) {
+            return null;
+        }
+
+        // Trechos deste processo viram espaços (ignorados como linhas vazias)
+        for (long[] range : ownRanges.getOrDefault(csvFile, Collections.emptyList())) {
+            for (long p = Math.max(range[0], synced); p < range[1] && p - synced < tail.length; p++) {
+                if (tail[(int) (p - synced)] != '\n') tail[(int) (p - synced)] = ' ';
+            }
+        }
+
+        int complete = tail.length;
+        while (complete > 0 && tail[complete - 1] != '\n') complete--;
+
+        List<Change> changes = new ArrayList<>();
+        for (String line : new String(tail, 0, complete, LOG_CHARSET).split("\n")) {
+            line = line.trim();
+            if (line.isEmpty()) continue;
+
+            String record = unseal(line);
+            Change change = record != null ? parseChange(record) : null;
+            if (change == null) return null;
+            changes.add(change);
+        }
+
+        syncedPositions.put(csvFile, synced + complete);
+        ownRanges.remove(csvFile);
+        externallyChanged.remove(csvFile);
+        knownStamps.put(csvFile, current);
+        pendingEntries.merge(csvFile, changes.size(), Integer::sum);
+        return changes;
+    }
+
+    /**
+     * Interpreta um registro do log
+     *
+     * @return Alteração ou null se o registro for inválido
+     */
+    private static Change parseChange(String line) {
+        int comma = line.indexOf(',');
+        if (comma < 0) return null;
+        String type = line.substring(0, comma);
+        String payload = line.substring(comma + 1);
+        String[] parts = payload.split(",");
+
+        try {
+            switch (type) {
+                case CREATE: {
+                    Appointment created = Appointment.parseLine(payload);
+                    if (created == null || created.getId() == 0) return null;
+                    return new Change(type, created.getId(), created, null, null);
+                }
+                case CANCEL:
+                case COMPLETE:
+                    return new Change(type, Long.parseLong(parts[0]), null, null, null);
+                case RESCHEDULE:
+                    if (parts.length < 3) return null;
+                    return new Change(type, Long.parseLong(parts[0]), null,
+                            LocalDate.parse(parts[1], DATE_FORMATTER), LocalTime.parse(parts[2], TIME_FORMATTER));
+                default:
+                    return null;
+            }
+        } catch (DateTimeParseException | NumberFormatException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Verifica se outro processo alterou o snapshot ou o log desde a última leitura
+     * ou gravação feita por este processo. Custa apenas a consulta aos metadados dos arquivos.
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     * @return true se as consultas em memória podem estar desatualizadas
+     */
+    public static synchronized boolean changedSince(String csvFile) {
+        checkExternalChange(csvFile);
+        return !knownStamps.containsKey(csvFile) || externallyChanged.contains(csvFile);
+    }
+
+    /**
+     * Antes de uma gravação própria: se os arquivos não estão como este processo os deixou,
+     * outro processo os alterou (a marca fica até a próxima leitura)
+     */
+    private static void checkExternalChange(String csvFile) {
+        long[] known = knownStamps.get(csvFile);
+        if (known == null) return;
+
+        long[] current = stampOf(csvFile);
+        if (!Arrays.equals(known, current)) {
+            externallyChanged.add(csvFile);
+            // Snapshot substituído ou log encurtado: o final do log não basta
+            if (known[0] != current[0] || known[1] != current[1] || current[3] < known[3]) {
+                syncedPositions.remove(csvFile);
+            }
+        }
+    }
+
+    private static void rememberStamp(String csvFile) {
+        knownStamps.put(csvFile, stampOf(csvFile));
+    }
+
+    private static long[] csvStampOf(String csvFile) {
+        File csv = new File(csvFile);
+        return new long[] {csv.lastModified(), csv.length()};
+    }
+
+    private static long[] stampOf(String csvFile) {
+        File csv = new File(csvFile);
+        File log = new File(logFileFor(csvFile));
+        return new long[] {csv.lastModified(), csv.length(), log.lastModified(), log.length()};
+    }
+
+    /**
+     * Agenda a compactação do log no compactador em segundo plano
+     *
+     * @param csvFile Nome do arquivo CSV de consultas
+     */
+    public static void scheduleCompaction(String csvFile) {
+        COMPACTOR.submit(() -> compact(csvFile));
+    }
+}
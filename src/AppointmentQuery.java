@@ -0,0 +1,435 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.Set;
+
+/**
+ * Consulta composta sobre uma lista de consultas médicas.
+ * Reúne os filtros usados pelas telas (médico, paciente, status, período),
+ * a ordenação por data e hora e a paginação (início e limite). Um planejador simples
+ * escolhe o índice que já atende mais condições:
+ * <ol>
+ *     <li>agenda do médico ({@link DoctorSchedule}), quando se pede só consultas pendentes
+ *     de um médico: já vem em ordem de data e hora, então o limite interrompe a leitura;</li>
+ *     <li>índice por data da {@link AppointmentTable}, quando há período: só a fatia do
+ *     período é examinada, e o limite interrompe a leitura ao fim do dia necessário;</li>
+ *     <li>varredura das colunas da tabela, comparando valores primitivos;</li>
+ *     <li>varredura de uma lista comum (por exemplo, a lista de consultas de um paciente).</li>
+ * </ol>
+ * Nas duas varreduras, uma consulta ordenada com limite guarda só as primeiras consultas
+ * na ordem pedida ({@link Top}), em vez de reunir e ordenar todas as que atendem aos filtros.
+ * Exemplo: {@code AppointmentQuery.over(consultas).doctor(crm).status(PENDING).orderByDateTime().limit(5).list()}
+ *
+ * Consultas ordenadas também podem continuar depois de uma consulta já exibida
+ * ({@link #startAfter}), o que permite paginar sem reler as páginas anteriores:
+ * o período examinado começa (ou termina) no dia da última consulta exibida.
+ */
+public class AppointmentQuery {
+
+    /** Forma de execução escolhida pelo planejador */
+    enum Plan { DOCTOR_SCHEDULE, DATE_INDEX, TABLE_SCAN, LIST_SCAN }
+
+    private static final Comparator<Appointment> BY_DATE_TIME = Comparator.comparingLong(Appointment::slotMinute);
+
+    /** Limites do índice por data quando só um lado do período é conhecido */
+    private static final LocalDate FIRST_DAY = LocalDate.ofEpochDay(Integer.MIN_VALUE);
+    private static final LocalDate LAST_DAY = LocalDate.ofEpochDay(Integer.MAX_VALUE - 1);
+
+    private final List<Appointment> source;
+    private String doctorCRM;
+    private String patientCPF;
+    private Set<AppointmentStatus> statuses;
+    private LocalDate startDate;
+    private LocalDate endDate;
+    private boolean ordered = false;
+    private boolean descending = false;
+    private int offset = 0;
+    private int limit = Integer.MAX_VALUE;
+
+    // Continuação depois de uma consulta (paginação por chave)
+    private Appointment after;
+    private long afterSlot;
+    private int afterPosition;
+
+    // Período efetivamente examinado na execução atual (o pedido, estreitado pela continuação)
+    private LocalDate scanStart;
+    private LocalDate scanEnd;
+
+    private AppointmentQuery(List<Appointment> source) {
+        this.source = source;
+    }
+
+    /**
+     * Inicia uma consulta sobre uma lista de consultas
+     *
+     * @param appointments Lista de consultas (de preferência a tabela carregada do CSV)
+     * @return Nova consulta, sem filtros
+     */
+    public static AppointmentQuery over(List<Appointment> appointments) {
+        return new AppointmentQuery(appointments);
+    }
+
+    public AppointmentQuery doctor(String crm) {
+        this.doctorCRM = crm;
+        return this;
+    }
+
+    public AppointmentQuery patient(String cpf) {
+        this.patientCPF = cpf;
+        return this;
+    }
+
+    /**
+     * Aceita somente consultas com um dos status informados
+     */
+    public AppointmentQuery status(AppointmentStatus first, AppointmentStatus... others) {
+        this.statuses = EnumSet.of(first, others);
+        return this;
+    }
+
+    /**
+     * Aceita somente consultas entre duas datas (inclusivas)
+     */
+    public AppointmentQuery between(LocalDate startDate, LocalDate endDate) {
+        this.startDate = startDate;
+        this.endDate = endDate;
+        return this;
+    }
+
+    /**
+     * Ordena por data e hora, da mais antiga para a mais recente
+     */
+    public AppointmentQuery orderByDateTime() {
+        this.ordered = true;
+        this.descending = false;
+        return this;
+    }
+
+    /**
+     * Ordena por data e hora, da mais recente para a mais antiga
+     */
+    public AppointmentQuery newestFirst() {
+        this.ordered = true;
+        this.descending = true;
+        return this;
+    }
+
+    public AppointmentQuery offset(int offset) {
+        this.offset = Math.max(0, offset);
+        return this;
+    }
+
+    public AppointmentQuery limit(int limit) {
+        this.limit = Math.max(0, limit);
+        return this;
+    }
+
+    /**
+     * Continua a consulta ordenada logo depois de uma consulta já lida
+     * (a última da página anterior), sem precisar contar as anteriores
+     *
+     * @param last Última consulta lida, ou null para recomeçar do início
+     * @throws IllegalStateException se a consulta não tiver ordenação
+     */
+    public AppointmentQuery startAfter(Appointment last) {
+        if (last != null && !ordered) {
+            throw new IllegalStateException("A continuação exige uma consulta ordenada");
+        }
+
+        this.after = last;
+        if (last != null) {
+            this.afterSlot = last.slotMinute();
+            this.afterPosition = positionOf(last);
+        }
+        return this;
+    }
+
+    /**
+     * Executa a consulta
+     *
+     * @return Consultas encontradas (empates na data e hora ficam na ordem da lista de origem)
+     */
+    public List<Appointment> list() {
+        scanStart = startDate;
+        scanEnd = endDate;
+        if (after != null) {
+            // Só os dias a partir da última consulta lida interessam
+            LocalDate afterDay = LocalDate.ofEpochDay(Math.floorDiv(afterSlot, 1440));
+            if (descending) {
+                scanStart = scanStart != null ? scanStart : FIRST_DAY;
+                scanEnd = scanEnd == null || afterDay.isBefore(scanEnd) ? afterDay : scanEnd;
+            } else {
+                scanStart = scanStart == null || afterDay.isAfter(scanStart) ? afterDay : scanStart;
+                scanEnd = scanEnd != null ? scanEnd : LAST_DAY;
+            }
+        }
+
+        if (limit == 0 || (scanStart != null && scanStart.isAfter(scanEnd))) {
+            return new ArrayList<>();
+        }
+
+        // Quantas consultas precisam ser reunidas antes de aplicar o início da página
+        int wanted = limit == Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) Math.min(Integer.MAX_VALUE, (long) offset + limit);
+
+        List<Appointment> found;
+        switch (plan()) {
+            case DOCTOR_SCHEDULE:
+                found = DoctorSchedule.scan(doctorCRM,
+                        scanStart != null ? scanStart.atStartOfDay() : null,
+                        scanEnd != null ? scanEnd.plusDays(1).atStartOfDay().minusNanos(1) : null,
+                        descending, appointment -> matches(appointment, positionOf(appointment)), wanted);
+                break;
+            case DATE_INDEX:
+                found = scanDateIndex((AppointmentTable) source, wanted);
+                break;
+            case TABLE_SCAN:
+                found = scanTable((AppointmentTable) source, wanted);
+                break;
+            default:
+                found = scanList(wanted);
+        }
+
+        if (ordered) {
+            // Ordenação estável: os empates ficam na ordem da origem
+            found.sort(descending ? BY_DATE_TIME.reversed() : BY_DATE_TIME);
+        }
+
+        int from = Math.min(offset, found.size());
+        int to = (int) Math.min(found.size(), (long) from + limit);
+        return from == 0 && to == found.size() ? found : new ArrayList<>(found.subList(from, to));
+    }
+
+    /**
+     * Escolhe o índice que atende mais condições da consulta
+     */
+    Plan plan() {
+        boolean onlyPending = statuses != null && statuses.size() == 1 && statuses.contains(AppointmentStatus.PENDING);
+
+        // A agenda só conhece as consultas do cadastro completo, não de uma sublista
+        if (source instanceof AppointmentTable) {
+            if (doctorCRM != null && onlyPending) return Plan.DOCTOR_SCHEDULE;
+            if (startDate != null || after != null) return Plan.DATE_INDEX;
+            return Plan.TABLE_SCAN;
+        }
+        return Plan.LIST_SCAN;
+    }
+
+    /**
+     * Fatia do índice por data, percorrida na direção da ordenação pedida.
+     * Com limite, a leitura termina quando já há consultas suficientes e o dia muda
+     * (as consultas do mesmo dia ainda precisam ser ordenadas pelo horário).
+     */
+    private List<Appointment> scanDateIndex(AppointmentTable table, int wanted) {
+        List<Appointment> found = new ArrayList<>();
+        int[] rows = table.rowsBetween(scanStart, scanEnd);
+        RowFilter filter = new RowFilter(table);
+
+        if (!ordered) {
+            for (int i = 0; i < rows.length && found.size() < wanted; i++) {
+                if (filter.accepts(rows[i])) found.add(table.get(rows[i]));
+            }
+            return found;
+        }
+
+        int lastDay = 0;
+        int dayStart = descending ? rows.length - 1 : 0;
+        while (dayStart >= 0 && dayStart < rows.length) {
+            // Delimitar o dia atual (dentro do dia as linhas ficam na ordem da tabela)
+            int day = table.epochDay(rows[dayStart]);
+            if (found.size() >= wanted && day != lastDay) break;
+
+            int first = dayStart;
+            int last = dayStart;
+            if (descending) {
+                while (first > 0 && table.epochDay(rows[first - 1]) == day) first--;
+                dayStart = first - 1;
+            } else {
+                while (last + 1 < rows.length && table.epochDay(rows[last + 1]) == day) last++;
+                dayStart = last + 1;
+            }
+
+            for (int i = first; i <= last; i++) {
+                if (filter.accepts(rows[i])) {
+                    found.add(table.get(rows[i]));
+                    lastDay = day;
+                }
+            }
+        }
+        return found;
+    }
+
+    private List<Appointment> scanTable(AppointmentTable table, int max) {
+        List<Appointment> found = new ArrayList<>();
+        RowFilter filter = new RowFilter(table);
+        if (filter.empty) return found;
+
+        if (ordered && max != Integer.MAX_VALUE) {
+            Top top = new Top(max);
+            for (int row = 0; row < table.size(); row++) {
+                if (!filter.accepts(row)) continue;
+                long slot = (long) table.epochDay(row) * 1440 + table.minute(row);
+                // A consulta só é criada se entrar entre as primeiras
+                if (top.accepts(slot, row)) top.add(slot, row, table.get(row));
+            }
+            return top.inOrder();
+        }
+
+        for (int row = 0; row < table.size() && found.size() < max; row++) {
+            if (filter.accepts(row)) found.add(table.get(row));
+        }
+        return found;
+    }
+
+    private List<Appointment> scanList(int max) {
+        if (ordered && max != Integer.MAX_VALUE) {
+            Top top = new Top(max);
+            int position = 0;
+            for (Appointment appointment : source) {
+                if (matches(appointment, position) && top.accepts(appointment.slotMinute(), position)) {
+                    top.add(appointment.slotMinute(), position, appointment);
+                }
+                position++;
+            }
+            return top.inOrder();
+        }
+
+        List<Appointment> found = new ArrayList<>();
+        int position = 0;
+        for (Appointment appointment : source) {
+            if (found.size() >= max) break;
+            if (matches(appointment, position)) found.add(appointment);
+            position++;
+        }
+        return found;
+    }
+
+    /**
+     * As primeiras consultas na ordem pedida (data e hora, empates pela posição na origem),
+     * em um heap limitado cujo topo é a última delas: cada consulta encontrada custa
+     * O(log max), e só as que entram no heap ficam em memória
+     */
+    private final class Top {
+        private final int max;
+        private final PriorityQueue<Candidate> heap;
+
+        Top(int max) {
+            this.max = max;
+            this.heap = new PriorityQueue<>(Math.min(max, 1024), (a, b) -> compare(b.slot, b.position, a.slot, a.position));
+        }
+
+        /**
+         * Verifica se a consulta entraria entre as primeiras (antes de criá-la)
+         */
+        boolean accepts(long slot, int position) {
+            if (heap.size() < max) return true;
+            Candidate last = heap.peek();
+            return compare(slot, position, last.slot, last.position) < 0;
+        }
+
+        void add(long slot, int position, Appointment appointment) {
+            if (heap.size() >= max) heap.poll();
+            heap.add(new Candidate(slot, position, appointment));
+        }
+
+        /**
+         * @return Consultas guardadas, na ordem pedida
+         */
+        List<Appointment> inOrder() {
+            List<Candidate> candidates = new ArrayList<>(heap);
+            candidates.sort((a, b) -> compare(a.slot, a.position, b.slot, b.position));
+            List<Appointment> found = new ArrayList<>(candidates.size());
+            for (Candidate candidate : candidates) {
+                found.add(candidate.appointment);
+            }
+            return found;
+        }
+
+        private int compare(long slot, int position, long otherSlot, int otherPosition) {
+            if (slot != otherSlot) return descending ? Long.compare(otherSlot, slot) : Long.compare(slot, otherSlot);
+            return Integer.compare(position, otherPosition);
+        }
+    }
+
+    private static final class Candidate {
+        final long slot;
+        final int position;
+        final Appointment appointment;
+
+        Candidate(long slot, int position, Appointment appointment) {
+            this.slot = slot;
+            this.position = position;
+            this.appointment = appointment;
+        }
+    }
+
+    /**
+     * Verifica todas as condições em uma consulta qualquer
+     *
+     * @param position Posição da consulta na lista de origem (desempate da ordenação)
+     */
+    private boolean matches(Appointment appointment, int position) {
+        if (doctorCRM != null && !doctorCRM.equals(appointment.getDoctorCRM())) return false;
+        if (patientCPF != null && !appointment.belongsToPatient(patientCPF)) return false;
+        if (statuses != null && !statuses.contains(appointment.getStatus())) return false;
+        if (scanStart != null && !appointment.isInPeriod(scanStart, scanEnd)) return false;
+        return comesAfter(appointment.slotMinute(), position, appointment);
+    }
+
+    /**
+     * Verifica se a consulta vem depois da última consulta lida, na ordem pedida
+     * (empates no horário seguem a ordem da lista de origem)
+     */
+    private boolean comesAfter(long slot, int position, Appointment appointment) {
+        if (after == null) return true;
+        if (slot != afterSlot) return descending ? slot < afterSlot : slot > afterSlot;
+        return appointment != after && position > afterPosition;
+    }
+
+    /**
+     * Posição da consulta na lista de origem, ou -1 se ela não estiver na lista
+     */
+    private int positionOf(Appointment appointment) {
+        if (source instanceof AppointmentTable) {
+            return appointment.table() == source ? appointment.row() : -1;
+        }
+        for (int i = 0; i < source.size(); i++) {
+            if (source.get(i) == appointment) return i;
+        }
+        return -1;
+    }
+
+    /**
+     * Condições convertidas para os valores primitivos das colunas da tabela
+     */
+    private class RowFilter {
+        private final AppointmentTable table;
+        private final int crm;
+        private final long cpf;
+        private final long startDay;
+        private final long endDay;
+        private final boolean empty;
+
+        RowFilter(AppointmentTable table) {
+            this.table = table;
+            this.crm = doctorCRM != null ? AppointmentTable.findCrmCode(doctorCRM) : -1;
+            this.cpf = patientCPF != null ? PatientIndex.pack(patientCPF) : -1;
+            this.startDay = scanStart != null ? scanStart.toEpochDay() : Long.MIN_VALUE;
+            this.endDay = scanEnd != null ? scanEnd.toEpochDay() : Long.MAX_VALUE;
+            // CRM ou CPF que não aparecem em nenhuma consulta: nada a procurar
+            this.empty = (doctorCRM != null && crm < 0) || (patientCPF != null && cpf < 0);
+        }
+
+        boolean accepts(int row) {
+            if (empty) return false;
+            if (doctorCRM != null && table.crm(row) != crm) return false;
+            if (patientCPF != null && table.cpf(row) != cpf) return false;
+            if (statuses != null && !statuses.contains(table.status(row))) return false;
+            int day = table.epochDay(row);
+            if (day < startDay || day > endDay) return false;
+            return comesAfter((long) day * 1440 + table.minute(row), row, null);
+        }
+    }
+}
@@ -0,0 +1,363 @@
+import java.io.IOException;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ponto único de alteração das consultas.
+ * Centraliza o agendamento, o cancelamento e a remarcação, gravando cada mudança
+ * no log de alterações e mantendo os índices em memória sincronizados com a
+ * lista de consultas. Cada consulta é localizada pelo seu identificador estável,
+ * sem percorrer a lista. Consultas pendentes cujo horário passou são marcadas como
+ * realizadas em lote, no carregamento, antes das listagens e, a cada minuto, na
+ * próxima sincronização dos menus ({@link DataWatcher#sync()}). A marcação sempre
+ * acontece na thread dos menus, que percorrem as listas sem trava.
+ */
+public class AppointmentStore {
+
+    private static String appointmentFile = "appointments.csv";
+
+    private static final Map<Long, Appointment> appointmentsById = new HashMap<>();
+    private static long nextId = 1;
+
+    /** Avisa a cada minuto que pode haver consultas vencidas (thread daemon para não segurar o encerramento) */
+    private static final ScheduledExecutorService STATUS_TICKER = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "appointment-status-ticker");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static boolean tickerStarted = false;
+    private static volatile boolean completionDue = false;
+
+    /**
+     * Carrega as consultas do arquivo e reconstrói os índices em memória
+     *
+     * @param filename Nome do arquivo CSV de consultas
+     * @return Lista de consultas carregadas
+     */
+    public static List<Appointment> load(String filename) {
+        appointmentFile = filename;
+        AppointmentLog.markSeen(filename);
+        List<Appointment> appointments = Appointment.loadFromCSV(filename);
+        reindex(appointments);
+        completeDue();
+        startTicker();
+        return appointments;
+    }
+
+    /**
+     * Sincroniza a memória com o que outro processo alterou desde a última leitura ou
+     * gravação deste processo. Sem alteração externa, não lê nada; se o outro processo só
+     * acrescentou registros ao log, aplica apenas esses registros, corrigindo no lugar os
+     * índices e as listas dos pacientes. Só relê tudo se o snapshot foi substituído.
+     * A lista informada é atualizada no lugar, então quem já a conhece (Main, telas
+     * abertas) continua com a mesma referência.
+     *
+     * @param appointments Lista de consultas em memória
+     * @return true se as consultas foram relidas por completo (as listas dos pacientes precisam ser refeitas)
+     */
+    public static synchronized boolean refreshIfChanged(List<Appointment> appointments) {
+        if (!AppointmentLog.changedSince(appointmentFile)) {
+            return false;
+        }
+
+        List<AppointmentLog.Change> changes = AppointmentLog.readTail(appointmentFile);
+        if (changes != null && applyAll(changes, appointments)) {
+            completeDue();
+            return false;
+        }
+
+        AppointmentLog.markSeen(appointmentFile);
+        List<Appointment> loaded = Appointment.loadFromCSV(appointmentFile);
+        appointments.clear();
+        appointments.addAll(loaded);
+        reindex(appointments);
+        completeDue();
+        return true;
+    }
+
+    /**
+     * Aplica alterações de outro processo, como se tivessem sido feitas aqui (sem gravar no log)
+     *
+     * @return false se alguma alteração se refere a uma consulta desconhecida
+     */
+    private static boolean applyAll(List<AppointmentLog.Change> changes, List<Appointment> appointments) {
+        for (AppointmentLog.Change change : changes) {
+            if (change.isCreate()) {
+                // Uma leitura completa concorrente pode já ter trazido a consulta
+                if (appointmentsById.containsKey(change.id)) continue;
+                index(change.created, appointments);
+                PatientIndex.attach(change.created);
+                continue;
+            }
+
+            Appointment target = appointmentsById.get(change.id);
+            if (target == null) return false;
+
+            if (change.isCancel()) {
+                if (target.getStatus() == AppointmentStatus.CANCELLED) continue;
+                LastVisitTracker.cancelled(target);
+                target.setStatus(AppointmentStatus.CANCELLED);
+                DoctorSchedule.remove(target);
+            } else if (change.isComplete()) {
+                if (target.getStatus() == AppointmentStatus.COMPLETED) continue;
+                target.setStatus(AppointmentStatus.COMPLETED);
+                DoctorSchedule.remove(target);
+                DoctorPatientIndex.recordVisit(target);
+            } else if (change.isReschedule()) {
+                LocalDate previousDate = target.getDate();
+                move(target, change.date, change.time);
+                StatusTransitionScheduler.track(target);
+                LastVisitTracker.moved(target, previousDate);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reconstrói os índices em memória a partir da lista completa de consultas
+     *
+     * @param appointments Lista de consultas
+     */
+    public static synchronized void reindex(List<Appointment> appointments) {
+        // Histórico já arquivado em segmentos mensais: só o resumo entra nos índices
+        AppointmentArchive.Summary archived = AppointmentArchive.summary(appointmentFile);
+
+        appointmentsById.clear();
+        nextId = archived.maxId() + 1;
+        for (Appointment appointment : appointments) {
+            appointmentsById.put(appointment.getId(), appointment);
+            nextId = Math.max(nextId, appointment.getId() + 1);
+        }
+
+        DoctorSchedule.rebuild(appointments);
+        StatusTransitionScheduler.rebuild(appointments);
+        DoctorPatientIndex.rebuild(archived.pairs(), appointments);
+        LastVisitTracker.rebuild(archived.pairs(), appointments);
+    }
+
+    /**
+     * Consultas realizadas de todo o histórico, da mais recente para a mais antiga
+     * (ver {@link #history})
+     *
+     * @param appointments Consultas em memória a considerar (lista geral ou lista do paciente)
+     * @param crm CRM do médico ou null para todos
+     * @param cpf CPF do paciente ou null para todos
+     * @param startDate Data inicial (inclusiva) ou null, junto com a final, para todo o histórico
+     * @param endDate Data final (inclusiva)
+     * @return Iterador das consultas, na ordem de exibição
+     */
+    public static Iterator<Appointment> completedHistory(List<Appointment> appointments, String crm, String cpf,
+                                                         LocalDate startDate, LocalDate endDate) {
+        return history(appointments, crm, cpf, AppointmentStatus.COMPLETED, startDate, endDate);
+    }
+
+    /**
+     * Consultas de todo o histórico, da mais recente para a mais antiga: as que estão em
+     * memória e, depois delas, as arquivadas em segmentos mensais ({@link AppointmentArchive}),
+     * lidos só quando a iteração chega ao mês.
+     *
+     * @param appointments Consultas em memória a considerar (lista geral ou lista do paciente)
+     * @param crm CRM do médico ou null para todos
+     * @param cpf CPF do paciente ou null para todos
+     * @param status Status das consultas ou null para todos
+     * @param startDate Data inicial (inclusiva) ou null, junto com a final, para todo o histórico
+     * @param endDate Data final (inclusiva)
+     * @return Iterador das consultas, na ordem de exibição
+     */
+    public static Iterator<Appointment> history(List<Appointment> appointments, String crm, String cpf,
+                                                AppointmentStatus status, LocalDate startDate, LocalDate endDate) {
+        AppointmentQuery query = AppointmentQuery.over(appointments)
+                .doctor(crm)
+                .patient(cpf)
+                .between(startDate, endDate)
+                .newestFirst();
+        if (status != null) {
+            query.status(status);
+        }
+        Iterator<Appointment> recent = query.list().iterator();
+        LocalDate hotStart = AppointmentArchive.hotStart();
+
+        // Junção das duas sequências já ordenadas; consultas ainda em memória não se repetem do arquivo
+        return new Iterator<Appointment>() {
+            private Iterator<Appointment> archived;
+            private Appointment nextRecent = recent.hasNext() ? recent.next() : null;
+            private Appointment nextArchived;
+
+            @Override
+            public boolean hasNext() {
+                return nextRecent != null || peekArchived() != null;
+            }
+
+            @Override
+            public Appointment next() {
+                Appointment result;
+                // O arquivo só tem meses anteriores à janela recente: antes dela, nem é aberto
+                if (nextRecent != null && (!nextRecent.getDate().isBefore(hotStart)
+                        || peekArchived() == null || nextRecent.slotMinute() >= nextArchived.slotMinute())) {
+                    result = nextRecent;
+                    nextRecent = recent.hasNext() ? recent.next() : null;
+                } else {
+                    result = peekArchived();
+                    if (result == null) throw new NoSuchElementException();
+                    nextArchived = null;
+                }
+                return result;
+            }
+
+            private Appointment peekArchived() {
+                if (archived == null) {
+                    archived = AppointmentArchive.newestFirst(appointmentFile, crm, cpf, status, startDate, endDate);
+                }
+                while (nextArchived == null && archived.hasNext()) {
+                    Appointment appointment = archived.next();
+                    if (findById(appointment.getId()) == null) nextArchived = appointment;
+                }
+                return nextArchived;
+            }
+        };
+    }
+
+    /**
+     * Busca uma consulta pelo identificador
+     *
+     * @param id Identificador da consulta
+     * @return Consulta encontrada ou null se não encontrada
+     */
+    public static synchronized Appointment findById(long id) {
+        return appointmentsById.get(id);
+    }
+
+    /**
+     * Registra uma nova consulta, atribuindo-lhe um identificador
+     *
+     * @param appointment Consulta criada
+     * @param allAppointments Lista de todas as consultas
+     * @throws IOException se ocorrer erro ao gravar a alteração
+     */
+    public static synchronized void create(Appointment appointment, List<Appointment> allAppointments) throws IOException {
+        if (appointment.getId() == 0) {
+            appointment.setId(nextId++);
+        }
+
+        AppointmentLog.appendCreate(appointmentFile, appointment);
+        index(appointment, allAppointments);
+    }
+
+    private static void index(Appointment appointment, List<Appointment> allAppointments) {
+        allAppointments.add(appointment);
+        appointmentsById.put(appointment.getId(), appointment);
+        nextId = Math.max(nextId, appointment.getId() + 1);
+        DoctorSchedule.add(appointment);
+        StatusTransitionScheduler.track(appointment);
+        DoctorPatientIndex.add(appointment);
+        LastVisitTracker.add(appointment);
+    }
+
+    /**
+     * Cancela uma consulta
+     *
+     * @param appointment Consulta a ser cancelada
+     * @throws IOException se ocorrer erro ao gravar a alteração
+     */
+    public static synchronized void cancel(Appointment appointment) throws IOException {
+        AppointmentLog.appendCancel(appointmentFile, appointment);
+
+        Appointment indexed = appointmentsById.get(appointment.getId());
+        LastVisitTracker.cancelled(indexed != null ? indexed : appointment);
+        if (indexed != null && indexed != appointment) {
+            indexed.setStatus(AppointmentStatus.CANCELLED);
+            DoctorSchedule.remove(indexed);
+        }
+
+        appointment.setStatus(AppointmentStatus.CANCELLED);
+        DoctorSchedule.remove(appointment);
+    }
+
+    /**
+     * Remarca uma consulta para uma nova data e hora, mantendo o mesmo identificador.
+     * A consulta é alterada no próprio objeto, então as listas que a contêm
+     * (lista geral e lista do paciente) não precisam ser atualizadas.
+     *
+     * @param appointment Consulta a ser remarcada
+     * @param newDate Nova data
+     * @param newTime Novo horário
+     * @return true se a consulta foi remarcada, false se ela não foi encontrada
+     * @throws IOException se ocorrer erro ao gravar a alteração
+     */
+    public static synchronized boolean reschedule(Appointment appointment, LocalDate newDate, LocalTime newTime) throws IOException {
+        Appointment indexed = appointmentsById.get(appointment.getId());
+        if (indexed == null) {
+            return false;
+        }
+
+        AppointmentLog.appendReschedule(appointmentFile, appointment, newDate, newTime);
+
+        LocalDate previousDate = indexed.getDate();
+        if (indexed != appointment) {
+            move(indexed, newDate, newTime);
+        }
+        move(appointment, newDate, newTime);
+        StatusTransitionScheduler.track(indexed);
+        LastVisitTracker.moved(indexed, previousDate);
+        return true;
+    }
+
+    /**
+     * Marca como realizadas, em um único lote, as consultas pendentes cujo horário
+     * já passou segundo o {@link AppointmentClock}. Depois disso os filtros podem
+     * confiar no status, sem consultar o relógio para cada consulta.
+     *
+     * @return Quantidade de consultas marcadas como realizadas
+     */
+    public static synchronized int completeDue() {
+        List<Appointment> due = StatusTransitionScheduler.pollDue(AppointmentClock.now());
+        if (due.isEmpty()) {
+            return 0;
+        }
+
+        try {
+            AppointmentLog.appendComplete(appointmentFile, due);
+        } catch (IOException e) {
+            // Sem o registro, as consultas voltam a ser marcadas no próximo carregamento
+            System.out.println("Erro ao registrar as consultas realizadas: " + e.getMessage());
+        }
+
+        for (Appointment appointment : due) {
+            appointment.setStatus(AppointmentStatus.COMPLETED);
+            DoctorSchedule.remove(appointment);
+            DoctorPatientIndex.recordVisit(appointment);
+        }
+        return due.size();
+    }
+
+    /**
+     * Marca as consultas vencidas se o aviso periódico chegou desde a última marcação.
+     * Deve ser chamado da thread dos menus.
+     */
+    public static void completeDueIfTicked() {
+        if (!completionDue) return;
+        completionDue = false;
+        completeDue();
+    }
+
+    private static synchronized void startTicker() {
+        if (tickerStarted) return;
+        tickerStarted = true;
+        // Só o aviso: as consultas e os índices não são alterados fora da thread dos menus
+        STATUS_TICKER.scheduleWithFixedDelay(() -> completionDue = true, 1, 1, TimeUnit.MINUTES);
+    }
+
+    private static void move(Appointment appointment, LocalDate newDate, LocalTime newTime) {
+        DoctorSchedule.remove(appointment);
+        appointment.moveTo(newDate, newTime);
+        DoctorSchedule.add(appointment);
+    }
+}
@@ -0,0 +1,399 @@
+import java.time.LocalDate;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Tabela de consultas em colunas de tipos primitivos (uma coluna por campo).
+ * Cada linha ocupa cerca de 27 bytes: dia (epoch day), minuto do dia, CPF compactado,
+ * código do CRM, status e identificador. Os objetos {@link Appointment} são apenas
+ * visões de uma linha, criadas sob demanda, de forma que um histórico grande
+ * caiba no heap e os filtros sejam laços simples sobre os arrays.
+ * A tabela também é a lista de consultas devolvida pelo carregamento do CSV.
+ *
+ * Para consultas por período a tabela mantém um índice por data: as linhas ordenadas
+ * pelo dia, em um array primitivo criado na primeira consulta por período. Qualquer
+ * intervalo de datas vira uma fatia contínua desse array, encontrada por busca binária,
+ * e os filtros de médico e status ({@link AppointmentQuery}) só olham as linhas dessa fatia.
+ */
+public class AppointmentTable extends AbstractList<Appointment> implements RandomAccess {
+
+    private static final int INITIAL_CAPACITY = 64;
+    private static final AppointmentStatus[] STATUSES = AppointmentStatus.values();
+
+    // Dicionário de CRMs compartilhado por todas as tabelas (poucos médicos, muitas linhas)
+    private static final Map<String, Integer> crmCodes = new ConcurrentHashMap<>();
+    private static volatile String[] crmValues = new String[16];
+    private static int crmCount = 0;
+
+    private int[] epochDays;
+    private short[] minutes;
+    private long[] cpfs;
+    private int[] crms;
+    private byte[] statuses;
+    private long[] ids;
+    private Appointment[] views;
+    private int size = 0;
+
+    // Índice por data: (dia << 32) | linha, em ordem crescente; null enquanto não for necessário
+    private long[] dayIndex;
+
+    public AppointmentTable() {
+        this(INITIAL_CAPACITY);
+    }
+
+    /**
+     * @param capacity Quantidade inicial de linhas reservadas
+     */
+    public AppointmentTable(int capacity) {
+        capacity = Math.max(1, capacity);
+        epochDays = new int[capacity];
+        minutes = new short[capacity];
+        cpfs = new long[capacity];
+        crms = new int[capacity];
+        statuses = new byte[capacity];
+        ids = new long[capacity];
+        views = new Appointment[capacity];
+    }
+
+    /**
+     * Cria uma tabela com os valores das consultas informadas, sem alterar a tabela
+     * de origem de cada uma. Se a lista já for uma tabela, ela é devolvida diretamente.
+     *
+     * @param appointments Lista de consultas
+     * @return Tabela com as mesmas consultas, na mesma ordem
+     */
+    public static AppointmentTable of(List<Appointment> appointments) {
+        if (appointments instanceof AppointmentTable) {
+            return (AppointmentTable) appointments;
+        }
+
+        AppointmentTable table = new AppointmentTable(appointments.size());
+        for (Appointment appointment : appointments) {
+            int row = table.copyRow(appointment.table(), appointment.row());
+            table.views[row] = appointment;
+        }
+        return table;
+    }
+
+    // Operações de lista
+
+    @Override
+    public Appointment get(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Linha " + row + " fora da tabela de " + size + " consultas");
+        }
+
+        Appointment view = views[row];
+        if (view == null) {
+            view = new Appointment(this, row);
+            views[row] = view;
+        }
+        return view;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Inclui a consulta no fim da tabela. A partir daí a consulta passa a ler e
+     * gravar seus campos nesta tabela.
+     */
+    @Override
+    public boolean add(Appointment appointment) {
+        int row = copyRow(appointment.table(), appointment.row());
+        views[row] = appointment;
+        appointment.moveToTable(this, row);
+        return true;
+    }
+
+    @Override
+    public Appointment remove(int row) {
+        Appointment removed = get(row);
+        removed.detach();
+
+        int moved = size - row - 1;
+        System.arraycopy(epochDays, row + 1, epochDays, row, moved);
+        System.arraycopy(minutes, row + 1, minutes, row, moved);
+        System.arraycopy(cpfs, row + 1, cpfs, row, moved);
+        System.arraycopy(crms, row + 1, crms, row, moved);
+        System.arraycopy(statuses, row + 1, statuses, row, moved);
+        System.arraycopy(ids, row + 1, ids, row, moved);
+        System.arraycopy(views, row + 1, views, row, moved);
+        size--;
+        views[size] = null;
+
+        for (int i = row; i < size; i++) {
+            if (views[i] != null && views[i].table() == this) {
+                views[i].moveToTable(this, i);
+            }
+        }
+        dayIndex = null; // as linhas seguintes mudaram de número
+        modCount++;
+        return removed;
+    }
+
+    /**
+     * Esvazia a tabela. As consultas que ainda são lidas desta tabela recebem uma
+     * cópia própria dos seus campos, para continuarem válidas nas listas dos pacientes.
+     */
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            if (views[i] != null && views[i].table() == this) {
+                views[i].detach();
+            }
+            views[i] = null;
+        }
+        size = 0;
+        dayIndex = null;
+        modCount++;
+    }
+
+    // Inclusão de linhas
+
+    /**
+     * Inclui uma linha sem criar a visão correspondente (usado pela leitura do CSV)
+     *
+     * @return Índice da nova linha
+     */
+    int append(int epochDay, int minute, long cpf, int crm, AppointmentStatus status, long id) {
+        ensureCapacity(size + 1);
+        int row = size++;
+        epochDays[row] = epochDay;
+        minutes[row] = (short) minute;
+        cpfs[row] = cpf;
+        crms[row] = crm;
+        statuses[row] = (byte) status.ordinal();
+        ids[row] = id;
+        if (dayIndex != null) {
+            insertIntoDayIndex(row);
+        }
+        modCount++;
+        return row;
+    }
+
+    /**
+     * Copia em bloco um intervalo de linhas de outra tabela (sem as visões)
+     */
+    void appendRows(AppointmentTable source, int from, int to) {
+        int count = to - from;
+        if (count <= 0) return;
+
+        ensureCapacity(size + count);
+        System.arraycopy(source.epochDays, from, epochDays, size, count);
+        System.arraycopy(source.minutes, from, minutes, size, count);
+        System.arraycopy(source.cpfs, from, cpfs, size, count);
+        System.arraycopy(source.crms, from, crms, size, count);
+        System.arraycopy(source.statuses, from, statuses, size, count);
+        System.arraycopy(source.ids, from, ids, size, count);
+        size += count;
+        dayIndex = null;
+        modCount++;
+    }
+
+    private int copyRow(AppointmentTable source, int row) {
+        return append(source.epochDays[row], source.minutes[row], source.cpfs[row], source.crms[row],
+                STATUSES[source.statuses[row]], source.ids[row]);
+    }
+
+    /**
+     * Garante espaço para ao menos {@code required} linhas (quem já sabe quantas vai
+     * acrescentar reserva de uma vez, em vez de a tabela crescer aos poucos)
+     */
+    void ensureCapacity(int required) {
+        if (required <= epochDays.length) return;
+
+        int capacity = Math.max(required, epochDays.length + (epochDays.length >> 1));
+        epochDays = Arrays.copyOf(epochDays, capacity);
+        minutes = Arrays.copyOf(minutes, capacity);
+        cpfs = Arrays.copyOf(cpfs, capacity);
+        crms = Arrays.copyOf(crms, capacity);
+        statuses = Arrays.copyOf(statuses, capacity);
+        ids = Arrays.copyOf(ids, capacity);
+        views = Arrays.copyOf(views, capacity);
+    }
+
+    // Leitura e escrita de campos (usadas por Appointment)
+
+    int epochDay(int row) {
+        return epochDays[row];
+    }
+
+    int minute(int row) {
+        return minutes[row];
+    }
+
+    long cpf(int row) {
+        return cpfs[row];
+    }
+
+    int crm(int row) {
+        return crms[row];
+    }
+
+    AppointmentStatus status(int row) {
+        return STATUSES[statuses[row]];
+    }
+
+    long id(int row) {
+        return ids[row];
+    }
+
+    void setSlot(int row, int epochDay, int minute) {
+        if (dayIndex != null && epochDays[row] != epochDay) {
+            removeFromDayIndex(row);
+            epochDays[row] = epochDay;
+            insertIntoDayIndex(row);
+        }
+        epochDays[row] = epochDay;
+        minutes[row] = (short) minute;
+    }
+
+    void setStatus(int row, AppointmentStatus status) {
+        statuses[row] = (byte) status.ordinal();
+    }
+
+    void setId(int row, long id) {
+        ids[row] = id;
+    }
+
+    // Índice por data
+
+    /**
+     * Índice por data, criado na primeira consulta por período.
+     * Depois de criado, é mantido a cada inclusão e remarcação; remoções e cópias em
+     * bloco o descartam, e ele é recriado na próxima consulta.
+     */
+    private long[] dayIndex() {
+        if (dayIndex == null) {
+            long[] index = new long[Math.max(size, INITIAL_CAPACITY)];
+            for (int row = 0; row < size; row++) {
+                index[row] = dayKey(row);
+            }
+            Arrays.parallelSort(index, 0, size);
+            dayIndex = index;
+        }
+        return dayIndex;
+    }
+
+    /**
+     * Linhas de um período, em ordem de dia (mesmo dia: ordem da tabela)
+     *
+     * @param startDate Data inicial (inclusiva)
+     * @param endDate Data final (inclusiva)
+     * @return Números das linhas
+     */
+    int[] rowsBetween(LocalDate startDate, LocalDate endDate) {
+        long[] index = dayIndex();
+        int from = lowerBound(index, (long) (int) startDate.toEpochDay() << 32);
+        int to = lowerBound(index, ((long) (int) endDate.toEpochDay() + 1) << 32);
+
+        int[] rows = new int[Math.max(0, to - from)];
+        for (int i = from; i < to; i++) {
+            rows[i - from] = (int) index[i];
+        }
+        return rows;
+    }
+
+    private long dayKey(int row) {
+        return ((long) epochDays[row] << 32) | row;
+    }
+
+    /**
+     * Inclui no índice a linha recém-incluída na tabela (size já conta a linha)
+     */
+    private void insertIntoDayIndex(int row) {
+        int count = size - 1;
+        if (count == dayIndex.length) {
+            dayIndex = Arrays.copyOf(dayIndex, count + (count >> 1) + 1);
+        }
+
+        long key = dayKey(row);
+        int position = lowerBound(dayIndex, 0, count, key);
+        System.arraycopy(dayIndex, position, dayIndex, position + 1, count - position);
+        dayIndex[position] = key;
+    }
+
+    private void removeFromDayIndex(int row) {
+        int position = Arrays.binarySearch(dayIndex, 0, size, dayKey(row));
+        if (position < 0) return;
+        System.arraycopy(dayIndex, position + 1, dayIndex, position, size - position - 1);
+        // A posição final fica livre até a próxima inclusão
+    }
+
+    private int lowerBound(long[] index, long key) {
+        return lowerBound(index, 0, size, key);
+    }
+
+    /**
+     * Primeira posição do intervalo cujo valor é maior ou igual à chave
+     */
+    private static int lowerBound(long[] index, int from, int to, long key) {
+        int low = from;
+        int high = to;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (index[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    // Dicionário de CRMs
+
+    /**
+     * Código do CRM no dicionário, incluindo-o se ainda não existir
+     *
+     * @param crm CRM do médico
+     * @return Código do CRM
+     */
+    static int crmCode(String crm) {
+        Integer code = crmCodes.get(crm);
+        if (code != null) return code;
+
+        synchronized (crmCodes) {
+            code = crmCodes.get(crm);
+            if (code != null) return code;
+
+            String[] values = crmValues;
+            if (crmCount == values.length) {
+                values = Arrays.copyOf(values, crmCount << 1);
+            }
+            values[crmCount] = crm;
+            crmValues = values; // publica o novo valor para as outras threads
+            crmCodes.put(crm, crmCount);
+            return crmCount++;
+        }
+    }
+
+    /**
+     * Código do CRM no dicionário, sem incluí-lo
+     *
+     * @return Código do CRM ou -1 se nenhuma consulta usa esse CRM
+     */
+    static int findCrmCode(String crm) {
+        Integer code = crm != null ? crmCodes.get(crm) : null;
+        return code != null ? code : -1;
+    }
+
+    static String crmOf(int code) {
+        return crmValues[code];
+    }
+
+    /**
+     * Converte um CPF compactado de volta para os 11 dígitos
+     */
+    static String cpfOf(long packed) {
+        String digits = Long.toString(packed);
+        return digits.length() >= 11 ? digits : "00000000000".substring(digits.length()) + digits;
+    }
+}
@@ -0,0 +1,137 @@
+import java.io.BufferedOutputStream;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+
+/**
+ * Substituição atômica de arquivos de dados.
+ * O novo conteúdo é gravado em um arquivo temporário ao lado do original (com nome único,
+ * para que dois processos substituindo o mesmo arquivo não se misturem), levado ao disco
+ * e só então renomeado por cima dele; depois a entrada do diretório também vai ao disco.
+ * Quem lê o arquivo (inclusive depois de uma queda no meio da gravação) vê o conteúdo
+ * antigo inteiro ou o novo inteiro, nunca um arquivo truncado pela metade.
+ *
+ * Usa a mesma propriedade {@code storage.force} de {@link GroupCommitWriter}.
+ */
+public class AtomicFile {
+
+    private static final boolean FORCE = Boolean.parseBoolean(System.getProperty("storage.force", "true"));
+
+    /**
+     * Conteúdo binário do arquivo
+     */
+    public interface Content {
+        void writeTo(OutputStream out) throws IOException;
+    }
+
+    /**
+     * Conteúdo em texto, na codificação padrão (a mesma do FileWriter)
+     */
+    public interface Lines {
+        void writeTo(PrintWriter writer) throws IOException;
+    }
+
+    /**
+     * Substitui o conteúdo de um arquivo de texto
+     *
+     * @param filename Nome do arquivo
+     * @param lines Gravação das linhas
+     * @return Data de modificação e tamanho do arquivo gravado (ver {@link #replace})
+     * @throws IOException se a gravação falhar (o arquivo original fica intacto)
+     */
+    public static long[] replaceLines(String filename, Lines lines) throws IOException {
+        return replace(filename, out -> {
+            PrintWriter writer = new PrintWriter(new BufferedWriter(new OutputStreamWriter(out, Charset.defaultCharset())));
+            lines.writeTo(writer);
+            writer.flush();
+            // O PrintWriter não lança exceções: o erro precisa ser conferido antes de substituir o arquivo
+            if (writer.checkError()) {
+                throw new IOException("Falha ao gravar " + filename);
+            }
+        });
+    }
+
+    /**
+     * Substitui o conteúdo de um arquivo
+     *
+     * @param filename Nome do arquivo
+     * @param content Gravação do conteúdo
+     * @return {data de modificação, tamanho} do arquivo gravado, lidos antes da troca
+     *         (não podem ser de um arquivo que outro processo gravou logo depois)
+     * @throws IOException se a gravação falhar (o arquivo original fica intacto)
+     */
+    public static long[] replace(String filename, Content content) throws IOException {
+        Path target = Paths.get(filename).toAbsolutePath();
+        Path directory = target.getParent();
+        // Temporário com nome único: dois processos substituindo o mesmo arquivo não gravam no mesmo temporário
+        Path temp = Files.createTempFile(directory, target.getFileName() + ".", ".tmp");
+
+        try {
+            keepPermissions(target, temp);
+            try (FileOutputStream file = new FileOutputStream(temp.toFile())) {
+                OutputStream out = new BufferedOutputStream(file, 65536);
+                content.writeTo(out);
+                out.flush();
+                if (FORCE) {
+                    file.getFD().sync();
+                }
+            }
+
+            File written = temp.toFile();
+            long[] stamp = {written.lastModified(), written.length()};
+            try {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+            if (FORCE) {
+                syncDirectory(directory);
+            }
+            return stamp;
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * O temporário é criado só para o dono (rw-------): o arquivo substituído mantém as
+     * permissões que tinha, e um arquivo novo fica legível pelos outros, como o FileWriter faria
+     */
+    private static void keepPermissions(Path target, Path temp) throws IOException {
+        try {
+            Set<PosixFilePermission> permissions = Files.exists(target)
+                    ? Files.getPosixFilePermissions(target)
+                    : PosixFilePermissions.fromString("rw-r--r--");
+            Files.setPosixFilePermissions(temp, permissions);
+        } catch (UnsupportedOperationException e) {
+            // Sistema de arquivos sem permissões POSIX
+        }
+    }
+
+    /**
+     * Leva ao disco a entrada do diretório, para que a troca de nome sobreviva a uma queda
+     */
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Alguns sistemas (ex: Windows) não permitem abrir um diretório; a troca já foi feita
+        }
+    }
+}
@@ -0,0 +1,144 @@
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Acompanha os arquivos de dados (médicos, pacientes e consultas) para que vários
+ * balcões trabalhando sobre os mesmos arquivos vejam as alterações uns dos outros
+ * sem recarga manual. Uma thread em segundo plano recebe os avisos do sistema de
+ * arquivos ({@link WatchService}) sobre o diretório de dados e anota quais arquivos
+ * mudaram; as alterações são aplicadas às listas em memória por {@link #sync()},
+ * chamado pelos menus antes de cada exibição (as listas não são seguras para
+ * alteração por outra thread enquanto uma tela as percorre).
+ */
+public class DataWatcher {
+
+    private static final String DOCTOR_CSV = "doctors_clean.csv";
+    private static final String PATIENT_CSV = "patients.csv";
+    private static final String APPOINTMENT_CSV = "appointments.csv";
+
+    /** Espera após o último aviso antes de ler, para não pegar um arquivo no meio da gravação */
+    private static final long SETTLE_MILLIS = 50;
+
+    private static final Set<String> changedFiles = new HashSet<>();
+    private static long lastEventMillis = 0;
+
+    private static List<Doctor> doctors;
+    private static List<Patient> patients;
+    private static List<Appointment> appointments;
+    private static Thread watcherThread;
+
+    /**
+     * Começa a acompanhar o diretório de dados (chamadas seguintes só trocam as listas)
+     *
+     * @param liveDoctors Lista de médicos em memória
+     * @param livePatients Lista de pacientes em memória
+     * @param liveAppointments Lista de consultas em memória
+     */
+    public static synchronized void start(List<Doctor> liveDoctors, List<Patient> livePatients, List<Appointment> liveAppointments) {
+        doctors = liveDoctors;
+        patients = livePatients;
+        appointments = liveAppointments;
+        if (watcherThread != null) return;
+
+        Path directory = Paths.get(APPOINTMENT_CSV).toAbsolutePath().getParent();
+        WatchService watcher;
+        try {
+            watcher = FileSystems.getDefault().newWatchService();
+            directory.register(watcher, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        } catch (IOException e) {
+            System.out.println("Não foi possível acompanhar os arquivos de dados: " + e.getMessage());
+            return;
+        }
+
+        watcherThread = new Thread(() -> watch(watcher), "data-file-watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    /**
+     * Aplica às listas em memória as alterações feitas nos arquivos desde a última chamada.
+     * Não faz nada (nem lê arquivos) se nenhum arquivo de dados mudou. Também marca as
+     * consultas vencidas quando o aviso periódico de {@link AppointmentStore} chegou.
+     */
+    public static void sync() {
+        AppointmentStore.completeDueIfTicked();
+
+        Set<String> changed;
+        synchronized (DataWatcher.class) {
+            if (changedFiles.isEmpty()) return;
+
+            long quiet = System.currentTimeMillis() - lastEventMillis;
+            if (quiet < SETTLE_MILLIS) {
+                try {
+                    DataWatcher.class.wait(SETTLE_MILLIS - quiet);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            changed = new HashSet<>(changedFiles);
+            changedFiles.clear();
+        }
+
+        if (changed.contains(DOCTOR_CSV)) {
+            AdminView.updateDoctorsFromCSV(doctors, DOCTOR_CSV);
+        }
+        if (changed.contains(PATIENT_CSV)) {
+            AdminView.updatePatientsFromCSV(patients, PATIENT_CSV);
+        }
+        if (changed.contains(APPOINTMENT_CSV) || changed.contains(AppointmentLog.logFileFor(APPOINTMENT_CSV))) {
+            // Só o que outro processo gravou é aplicado; as gravações deste processo são reconhecidas e ignoradas
+            if (AppointmentStore.refreshIfChanged(appointments)) {
+                Main.associateAppointmentsToPatients(patients, appointments);
+            }
+        }
+    }
+
+    /**
+     * Laço da thread de acompanhamento: anota os arquivos de dados citados nos avisos
+     */
+    private static void watch(WatchService watcher) {
+        String logFile = AppointmentLog.logFileFor(APPOINTMENT_CSV);
+        while (true) {
+            WatchKey key;
+            try {
+                key = watcher.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Avisos perdidos: conferir todos os arquivos
+                    markChanged(DOCTOR_CSV, PATIENT_CSV, APPOINTMENT_CSV);
+                    continue;
+                }
+
+                String name = event.context().toString();
+                if (name.equals(DOCTOR_CSV) || name.equals(PATIENT_CSV) || name.equals(APPOINTMENT_CSV) || name.equals(logFile)) {
+                    markChanged(name);
+                }
+            }
+
+            if (!key.reset()) {
+                return; // diretório não existe mais
+            }
+        }
+    }
+
+    private static synchronized void markChanged(String... names) {
+        for (String name : names) {
+            changedFiles.add(name);
+        }
+        lastEventMillis = System.currentTimeMillis();
+    }
+}
@@ -0,0 +1,226 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Mapa de horários ocupados de cada médico, em bits.
+ * O expediente é dividido em faixas de tamanho fixo (15 minutos por padrão, das 08:00
+ * às 18:00) e cada médico tem um bitset contínuo com uma faixa por bit, dia após dia,
+ * a partir da data em que o mapa foi criado. A busca por horários livres percorre
+ * palavras de 64 bits inteiras, então continua rápida mesmo para meses de agenda.
+ * O mapa é mantido pelo {@link DoctorSchedule}, que conhece todas as consultas pendentes.
+ *
+ * O expediente pode ser configurado com as propriedades
+ * {@code appointments.openingTime}, {@code appointments.closingTime} (HH:mm)
+ * e {@code appointments.slotMinutes}.
+ */
+public class DoctorAvailability {
+
+    private static final LocalTime OPENING_TIME = LocalTime.parse(System.getProperty("appointments.openingTime", "08:00"));
+    private static final LocalTime CLOSING_TIME = LocalTime.parse(System.getProperty("appointments.closingTime", "18:00"));
+    private static final int SLOT_MINUTES = Integer.getInteger("appointments.slotMinutes", 15);
+
+    private static final int OPENING_MINUTE = Appointment.minuteOf(OPENING_TIME);
+    private static final int SLOTS_PER_DAY = (Appointment.minuteOf(CLOSING_TIME) - OPENING_MINUTE) / SLOT_MINUTES;
+
+    /** Primeiro dia representado nos bitsets (dias anteriores não interessam para agendamento) */
+    private static long baseDay = AppointmentClock.today().toEpochDay();
+    private static final Map<String, long[]> busySlots = new HashMap<>();
+
+    /**
+     * Horário livre de um médico
+     */
+    public static class FreeSlot {
+        private final String doctorCRM;
+        private final LocalDateTime start;
+
+        FreeSlot(String doctorCRM, LocalDateTime start) {
+            this.doctorCRM = doctorCRM;
+            this.start = start;
+        }
+
+        public String getDoctorCRM() {
+            return doctorCRM;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+    }
+
+    /**
+     * Descarta todos os mapas (usado antes de reconstruir a agenda)
+     */
+    static synchronized void clear() {
+        busySlots.clear();
+        baseDay = AppointmentClock.today().toEpochDay();
+    }
+
+    /**
+     * Marca ou desmarca a faixa que contém um horário do médico
+     *
+     * @param crm CRM do médico
+     * @param slot Data e hora da consulta
+     * @param busy true se a faixa está ocupada
+     */
+    static synchronized void setBusy(String crm, LocalDateTime slot, boolean busy) {
+        long index = indexOf(slot);
+        if (index < 0) return; // antes do mapa ou fora do expediente
+
+        long[] bits = busySlots.get(crm);
+        int word = (int) (index >>> 6);
+        if (bits == null || word >= bits.length) {
+            if (!busy) return;
+            bits = bits == null ? new long[Math.max(word + 1, 64)] : Arrays.copyOf(bits, Math.max(word + 1, bits.length * 2));
+            busySlots.put(crm, bits);
+        }
+
+        if (busy) {
+            bits[word] |= 1L << index;
+        } else {
+            bits[word] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Início da faixa de expediente que contém um horário
+     *
+     * @return Início da faixa ou null se o horário estiver fora do expediente
+     */
+    static LocalDateTime slotStartOf(LocalDateTime dateTime) {
+        int minute = Appointment.minuteOf(dateTime.toLocalTime()) - OPENING_MINUTE;
+        if (minute < 0 || minute >= SLOTS_PER_DAY * SLOT_MINUTES) return null;
+        return dateTime.toLocalDate().atTime(OPENING_TIME).plusMinutes((long) (minute / SLOT_MINUTES) * SLOT_MINUTES);
+    }
+
+    static int getSlotMinutes() {
+        return SLOT_MINUTES;
+    }
+
+    /**
+     * Verifica se a faixa que contém um horário está livre na agenda do médico
+     *
+     * @param crm CRM do médico
+     * @param date Data
+     * @param time Horário
+     * @return true se a faixa estiver livre (horários fora do expediente nunca estão livres)
+     */
+    public static synchronized boolean isFree(String crm, LocalDate date, LocalTime time) {
+        long index = indexOf(LocalDateTime.of(date, time));
+        if (index < 0) return false;
+
+        long[] bits = busySlots.get(crm);
+        int word = (int) (index >>> 6);
+        return bits == null || word >= bits.length || (bits[word] & (1L << index)) == 0;
+    }
+
+    /**
+     * Retorna os primeiros horários livres de um médico a partir de um instante
+     *
+     * @param crm CRM do médico
+     * @param after Instante a partir do qual procurar (inclusivo)
+     * @param count Quantidade de horários desejada
+     * @return Início das faixas livres, em ordem
+     */
+    public static synchronized List<LocalDateTime> nextFree(String crm, LocalDateTime after, int count) {
+        List<LocalDateTime> result = new ArrayList<>();
+        long[] bits = busySlots.get(crm);
+
+        long index = firstIndexAtOrAfter(after);
+        while (result.size() < count) {
+            index = nextClearBit(bits, index);
+            result.add(startOf(index));
+            index++;
+        }
+        return result;
+    }
+
+    /**
+     * Retorna os primeiros horários livres entre todos os médicos a partir de um instante
+     *
+     * @param crms CRMs dos médicos considerados
+     * @param after Instante a partir do qual procurar (inclusivo)
+     * @param count Quantidade de horários desejada
+     * @return Horários livres em ordem (empates na ordem dos médicos informados)
+     */
+    public static synchronized List<FreeSlot> nextFree(List<String> crms, LocalDateTime after, int count) {
+        List<FreeSlot> result = new ArrayList<>();
+        if (crms.isEmpty()) return result;
+
+        // Intercalação: a próxima faixa livre de cada médico, escolhendo sempre a menor
+        long[] next = new long[crms.size()];
+        long start = firstIndexAtOrAfter(after);
+        for (int i = 0; i < next.length; i++) {
+            next[i] = nextClearBit(busySlots.get(crms.get(i)), start);
+        }
+
+        while (result.size() < count) {
+            int best = 0;
+            for (int i = 1; i < next.length; i++) {
+                if (next[i] < next[best]) best = i;
+            }
+
+            String crm = crms.get(best);
+            result.add(new FreeSlot(crm, startOf(next[best])));
+            next[best] = nextClearBit(busySlots.get(crm), next[best] + 1);
+        }
+        return result;
+    }
+
+    /**
+     * Próximo bit livre a partir de uma posição, examinando uma palavra de 64 bits por vez
+     */
+    private static long nextClearBit(long[] bits, long from) {
+        if (bits == null) return from;
+
+        int word = (int) (from >>> 6);
+        if (word >= bits.length) return from;
+
+        long free = ~bits[word] & (-1L << from);
+        while (free == 0) {
+            if (++word == bits.length) {
+                return (long) word << 6;
+            }
+            free = ~bits[word];
+        }
+        return ((long) word << 6) + Long.numberOfTrailingZeros(free);
+    }
+
+    /**
+     * Posição do bit da faixa que contém o horário
+     *
+     * @return Posição ou -1 se o horário estiver antes do mapa ou fora do expediente
+     */
+    private static long indexOf(LocalDateTime dateTime) {
+        long day = dateTime.toLocalDate().toEpochDay() - baseDay;
+        int minute = Appointment.minuteOf(dateTime.toLocalTime()) - OPENING_MINUTE;
+        if (day < 0 || minute < 0 || minute >= SLOTS_PER_DAY * SLOT_MINUTES) return -1;
+        return day * SLOTS_PER_DAY + minute / SLOT_MINUTES;
+    }
+
+    /**
+     * Posição da primeira faixa que começa no instante informado ou depois dele
+     */
+    private static long firstIndexAtOrAfter(LocalDateTime after) {
+        long day = after.toLocalDate().toEpochDay() - baseDay;
+        if (day < 0) return 0; // instante antes do início do mapa
+
+        int minute = Appointment.minuteOf(after.toLocalTime()) - OPENING_MINUTE;
+        if (after.getSecond() > 0 || after.getNano() > 0) minute++;
+        if (minute <= 0) return day * SLOTS_PER_DAY;
+
+        long slot = (minute + SLOT_MINUTES - 1) / SLOT_MINUTES;
+        return slot >= SLOTS_PER_DAY ? (day + 1) * SLOTS_PER_DAY : day * SLOTS_PER_DAY + slot;
+    }
+
+    private static LocalDateTime startOf(long index) {
+        long day = baseDay + index / SLOTS_PER_DAY;
+        long minute = OPENING_MINUTE + (index % SLOTS_PER_DAY) * SLOT_MINUTES;
+        return LocalDate.ofEpochDay(day).atStartOfDay().plusMinutes(minute);
+    }
+}
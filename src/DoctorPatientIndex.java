@@ -0,0 +1,198 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Índice muitos-para-muitos entre médicos e pacientes, mantido pelo {@link AppointmentStore}.
+ * Para cada par médico/paciente com alguma consulta guarda um único {@link Relationship},
+ * alcançável pelos dois lados: CRM -> pacientes e CPF -> médicos. Cada relação conta as
+ * consultas e as consultas realizadas, com a data da primeira e da última visita.
+ * As telas de "meus pacientes" e "meus médicos" viram consultas diretas ao mapa.
+ */
+public class DoctorPatientIndex {
+
+    // Ordem de inclusão = ordem em que a relação apareceu nas consultas
+    private static final Map<String, Map<Long, Relationship>> patientsByDoctor = new HashMap<>();
+    private static final Map<Long, Map<String, Relationship>> doctorsByPatient = new HashMap<>();
+
+    /**
+     * Relação entre um médico e um paciente
+     */
+    public static class Relationship {
+        private final String doctorCRM;
+        private final String patientCPF;
+        private int appointmentCount;
+        private int visitCount;
+        private LocalDate firstVisit;
+        private LocalDate lastVisit;
+
+        Relationship(String doctorCRM, String patientCPF) {
+            this.doctorCRM = doctorCRM;
+            this.patientCPF = patientCPF;
+        }
+
+        public String getDoctorCRM() {
+            return doctorCRM;
+        }
+
+        public String getPatientCPF() {
+            return patientCPF;
+        }
+
+        /**
+         * @return Quantidade de consultas entre o médico e o paciente (qualquer status)
+         */
+        public int getAppointmentCount() {
+            return appointmentCount;
+        }
+
+        /**
+         * @return Quantidade de consultas realizadas
+         */
+        public int getVisitCount() {
+            return visitCount;
+        }
+
+        /**
+         * @return Data da primeira consulta realizada ou null se nenhuma foi realizada
+         */
+        public LocalDate getFirstVisit() {
+            return firstVisit;
+        }
+
+        /**
+         * @return Data da última consulta realizada ou null se nenhuma foi realizada
+         */
+        public LocalDate getLastVisit() {
+            return lastVisit;
+        }
+
+        private void recordVisit(LocalDate date) {
+            recordVisits(1, date, date);
+        }
+
+        private void recordVisits(int count, LocalDate first, LocalDate last) {
+            visitCount += count;
+            if (firstVisit == null || first.isBefore(firstVisit)) firstVisit = first;
+            if (lastVisit == null || last.isAfter(lastVisit)) lastVisit = last;
+        }
+    }
+
+    /**
+     * Reconstrói o índice a partir da lista completa de consultas
+     *
+     * @param appointments Lista de consultas
+     */
+    public static synchronized void rebuild(List<Appointment> appointments) {
+        rebuild(Collections.emptyList(), appointments);
+    }
+
+    /**
+     * Reconstrói o índice a partir do histórico arquivado (ver {@link AppointmentArchive})
+     * e das consultas em memória
+     *
+     * @param archived Resumo do histórico arquivado, por par médico/paciente
+     * @param appointments Consultas em memória
+     */
+    public static synchronized void rebuild(Collection<AppointmentArchive.PairHistory> archived, List<Appointment> appointments) {
+        patientsByDoctor.clear();
+        doctorsByPatient.clear();
+
+        // O histórico arquivado vem antes: as relações mais antigas aparecem primeiro
+        for (AppointmentArchive.PairHistory pair : archived) {
+            Relationship relationship = relationshipOf(pair.doctorCRM, pair.patientCPF);
+            if (relationship == null) continue;
+
+            relationship.appointmentCount += pair.appointmentCount;
+            if (pair.visitCount > 0) {
+                relationship.recordVisits(pair.visitCount, pair.firstVisit, pair.lastVisit);
+            }
+        }
+
+        for (Appointment appointment : appointments) {
+            add(appointment);
+        }
+    }
+
+    /**
+     * Registra uma nova consulta (já realizada ou não)
+     *
+     * @param appointment Consulta registrada
+     */
+    public static synchronized void add(Appointment appointment) {
+        Relationship relationship = relationshipOf(appointment);
+        if (relationship == null) return;
+
+        relationship.appointmentCount++;
+        if (appointment.getStatus() == AppointmentStatus.COMPLETED) {
+            relationship.recordVisit(appointment.getDate());
+        }
+    }
+
+    /**
+     * Registra que uma consulta já contada passou a ser realizada
+     *
+     * @param appointment Consulta realizada
+     */
+    public static synchronized void recordVisit(Appointment appointment) {
+        Relationship relationship = relationshipOf(appointment);
+        if (relationship != null) {
+            relationship.recordVisit(appointment.getDate());
+        }
+    }
+
+    /**
+     * Pacientes com alguma consulta com o médico
+     *
+     * @param crm CRM do médico
+     * @return Relações do médico, na ordem em que apareceram
+     */
+    public static synchronized List<Relationship> patientsOf(String crm) {
+        Map<Long, Relationship> patients = patientsByDoctor.get(crm);
+        return patients == null ? Collections.emptyList() : new ArrayList<>(patients.values());
+    }
+
+    /**
+     * Médicos com alguma consulta com o paciente
+     *
+     * @param cpf CPF do paciente
+     * @return Relações do paciente, na ordem em que apareceram
+     */
+    public static synchronized List<Relationship> doctorsOf(String cpf) {
+        Map<String, Relationship> doctors = doctorsByPatient.get(PatientIndex.pack(cpf));
+        return doctors == null ? Collections.emptyList() : new ArrayList<>(doctors.values());
+    }
+
+    /**
+     * Relação entre um médico e um paciente
+     *
+     * @return Relação ou null se nunca tiveram consulta
+     */
+    public static synchronized Relationship get(String crm, String cpf) {
+        Map<Long, Relationship> patients = patientsByDoctor.get(crm);
+        return patients == null ? null : patients.get(PatientIndex.pack(cpf));
+    }
+
+    private static Relationship relationshipOf(Appointment appointment) {
+        return relationshipOf(appointment.getDoctorCRM(), appointment.getPatientCPF());
+    }
+
+    private static Relationship relationshipOf(String crm, String cpf) {
+        long packed = PatientIndex.pack(cpf);
+        if (crm == null || packed < 0) return null;
+
+        Map<Long, Relationship> patients = patientsByDoctor.computeIfAbsent(crm, key -> new LinkedHashMap<>());
+        Relationship relationship = patients.get(packed);
+        if (relationship == null) {
+            relationship = new Relationship(crm, cpf);
+            patients.put(packed, relationship);
+            doctorsByPatient.computeIfAbsent(packed, key -> new LinkedHashMap<>()).put(crm, relationship);
+        }
+        return relationship;
+    }
+}
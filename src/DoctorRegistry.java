@@ -0,0 +1,92 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Cadastro de médicos compartilhado por todo o processo.
+ * Mantém um índice CRM -> médico carregado uma única vez de doctors_clean.csv,
+ * evitando reler o arquivo a cada busca de nome. O índice é recarregado quando
+ * o arquivo muda no disco ou quando é invalidado explicitamente após uma edição.
+ * Junto com ele é montado um índice fonético dos nomes, para buscas aproximadas.
+ */
+public class DoctorRegistry {
+
+    private static final String DOCTOR_CSV = "doctors_clean.csv";
+
+    // Mantém a ordem do arquivo para as listagens de seleção de médico
+    private static Map<String, Doctor> doctorsByCRM = null;
+    private static final PhoneticNameIndex<Doctor> doctorsByName = new PhoneticNameIndex<>();
+    private static long loadedLastModified = -1;
+    private static long loadedLength = -1;
+
+    /**
+     * Busca um médico pelo CRM
+     *
+     * @param crm CRM do médico
+     * @return Médico encontrado ou null se não encontrado
+     */
+    public static synchronized Doctor findByCRM(String crm) {
+        ensureFresh();
+        return doctorsByCRM.get(crm);
+    }
+
+    /**
+     * Retorna todos os médicos cadastrados, na ordem do arquivo
+     *
+     * @return Nova lista com os médicos cadastrados
+     */
+    public static synchronized List<Doctor> getDoctors() {
+        ensureFresh();
+        return new ArrayList<>(doctorsByCRM.values());
+    }
+
+    /**
+     * Busca médicos pela pronúncia aproximada do nome, sem diferenciar acentos
+     * ("Joao Souza" encontra "João Sousa")
+     *
+     * @param name Nome ou parte do nome (palavras inteiras)
+     * @param limit Quantidade máxima de resultados
+     * @return Médicos encontrados, em ordem alfabética
+     */
+    public static synchronized List<Doctor> findByName(String name, int limit) {
+        ensureFresh();
+        return doctorsByName.find(name, limit);
+    }
+
+    /**
+     * Descarta o índice atual, forçando a releitura do arquivo na próxima consulta.
+     * Deve ser chamado após qualquer alteração no cadastro de médicos.
+     */
+    public static synchronized void invalidate() {
+        doctorsByCRM = null;
+    }
+
+    /**
+     * Recarrega o índice se ele foi invalidado ou se o arquivo mudou no disco
+     */
+    private static void ensureFresh() {
+        File file = new File(DOCTOR_CSV);
+        long lastModified = file.lastModified();
+        long length = file.length();
+
+        if (doctorsByCRM != null && lastModified == loadedLastModified && length == loadedLength) {
+            return;
+        }
+
+        Map<String, Doctor> index = new LinkedHashMap<>();
+        for (Doctor doctor : Doctor.loadFromCSV(DOCTOR_CSV)) {
+            index.putIfAbsent(doctor.getCode(), doctor);
+        }
+
+        doctorsByName.clear();
+        for (Doctor doctor : index.values()) {
+            doctorsByName.put(doctor.getCode(), doctor.getName(), doctor);
+        }
+
+        doctorsByCRM = index;
+        loadedLastModified = lastModified;
+        loadedLength = length;
+    }
+}
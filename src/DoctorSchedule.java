@@ -0,0 +1,155 @@
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.Predicate;
+
+/**
+ * Agenda ordenada de cada médico, compartilhada por todo o processo.
+ * Guarda apenas as consultas pendentes, ordenadas por data e hora, de forma que
+ * a verificação de conflito de horário e as listagens por período custem
+ * O(log n) em vez de percorrer todas as consultas do sistema.
+ * Cada horário guarda todas as consultas pendentes nele (dados antigos ou gravados por
+ * dois balcões ao mesmo tempo podem repetir um horário): o horário só fica livre quando
+ * a última delas sai da agenda.
+ * Também mantém o mapa de faixas ocupadas de {@link DoctorAvailability}.
+ */
+public class DoctorSchedule {
+
+    private static final Map<String, TreeMap<LocalDateTime, List<Appointment>>> schedules = new HashMap<>();
+
+    /**
+     * Reconstrói todas as agendas a partir da lista completa de consultas
+     *
+     * @param appointments Lista de consultas
+     */
+    public static synchronized void rebuild(List<Appointment> appointments) {
+        schedules.clear();
+        DoctorAvailability.clear();
+        for (Appointment appointment : appointments) {
+            add(appointment);
+        }
+    }
+
+    /**
+     * Inclui uma consulta na agenda do médico, se ela estiver pendente
+     *
+     * @param appointment Consulta a incluir
+     */
+    public static synchronized void add(Appointment appointment) {
+        if (appointment.getStatus() != AppointmentStatus.PENDING) return;
+
+        LocalDateTime slot = slotOf(appointment);
+        List<Appointment> occupants = schedules.computeIfAbsent(appointment.getDoctorCRM(), crm -> new TreeMap<>())
+                .computeIfAbsent(slot, key -> new ArrayList<>(1));
+        if (occupants.contains(appointment)) return;
+
+        occupants.add(appointment);
+        if (occupants.size() == 1) {
+            DoctorAvailability.setBusy(appointment.getDoctorCRM(), slot, true);
+        }
+    }
+
+    /**
+     * Remove uma consulta da agenda do médico (cancelamento ou remarcação)
+     *
+     * @param appointment Consulta a remover
+     */
+    public static synchronized void remove(Appointment appointment) {
+        TreeMap<LocalDateTime, List<Appointment>> schedule = schedules.get(appointment.getDoctorCRM());
+        LocalDateTime slot = slotOf(appointment);
+        List<Appointment> occupants = schedule != null ? schedule.get(slot) : null;
+        if (occupants == null || !occupants.remove(appointment)) {
+            return;
+        }
+
+        // Outra consulta pendente no mesmo horário continua ocupando-o
+        if (!occupants.isEmpty()) return;
+        schedule.remove(slot);
+
+        // A faixa só fica livre se nenhuma outra consulta pendente cair nela
+        LocalDateTime start = DoctorAvailability.slotStartOf(slot);
+        if (start != null && schedule.subMap(start, true, start.plusMinutes(DoctorAvailability.getSlotMinutes()), false).isEmpty()) {
+            DoctorAvailability.setBusy(appointment.getDoctorCRM(), slot, false);
+        }
+    }
+
+    /**
+     * Retorna a consulta pendente que ocupa um horário do médico
+     *
+     * @param crm CRM do médico
+     * @param date Data do horário
+     * @param time Hora do horário
+     * @return Primeira consulta que ocupa o horário ou null se estiver livre
+     */
+    public static synchronized Appointment findAt(String crm, LocalDate date, LocalTime time) {
+        List<Appointment> occupants = occupantsOf(crm, date, time);
+        return occupants != null ? occupants.get(0) : null;
+    }
+
+    /**
+     * Verifica se um horário do médico já está ocupado por uma consulta pendente
+     *
+     * @param crm CRM do médico
+     * @param date Data do horário
+     * @param time Hora do horário
+     * @param ignored Consulta que não conta como conflito (ex: a que está sendo remarcada), ou null
+     * @return true se o horário já estiver ocupado, false caso contrário
+     */
+    public static synchronized boolean isSlotTaken(String crm, LocalDate date, LocalTime time, Appointment ignored) {
+        List<Appointment> occupants = occupantsOf(crm, date, time);
+        if (occupants == null) return false;
+        for (Appointment occupant : occupants) {
+            if (occupant != ignored) return true;
+        }
+        return false;
+    }
+
+    private static List<Appointment> occupantsOf(String crm, LocalDate date, LocalTime time) {
+        TreeMap<LocalDateTime, List<Appointment>> schedule = schedules.get(crm);
+        return schedule != null ? schedule.get(LocalDateTime.of(date, time)) : null;
+    }
+
+    /**
+     * Percorre as consultas pendentes do médico em um intervalo, na ordem da agenda,
+     * até reunir a quantidade pedida de consultas aceitas pelo filtro
+     *
+     * @param crm CRM do médico
+     * @param start Instante inicial (inclusivo), ou null para o início da agenda
+     * @param end Instante final (inclusivo), ou null para o fim da agenda
+     * @param descending true para percorrer da consulta mais recente para a mais antiga
+     * @param filter Condição que as consultas devem atender
+     * @param max Quantidade máxima de consultas
+     * @return Consultas aceitas, na ordem percorrida
+     */
+    static synchronized List<Appointment> scan(String crm, LocalDateTime start, LocalDateTime end, boolean descending,
+                                               Predicate<Appointment> filter, int max) {
+        List<Appointment> result = new ArrayList<>();
+        TreeMap<LocalDateTime, List<Appointment>> schedule = schedules.get(crm);
+        if (schedule == null || (start != null && end != null && start.isAfter(end))) return result;
+
+        NavigableMap<LocalDateTime, List<Appointment>> range = schedule;
+        if (start != null) range = range.tailMap(start, true);
+        if (end != null) range = range.headMap(end, true);
+        if (descending) range = range.descendingMap();
+
+        for (List<Appointment> occupants : range.values()) {
+            for (Appointment appointment : occupants) {
+                if (result.size() >= max) return result;
+                if (filter.test(appointment)) {
+                    result.add(appointment);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static LocalDateTime slotOf(Appointment appointment) {
+        return LocalDateTime.of(appointment.getDate(), appointment.getTime());
+    }
+}
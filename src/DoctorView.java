@@ -1,3 +1,4 @@
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.*;
@@ -92,6 +93,7 @@ public class DoctorView {
 
         while (continueMenu) {
             try {
+                DataWatcher.sync();
                 System.out.println("\n===== MENU DO MÉDICO =====");
                 System.out.println("1 - Agendar nova consulta para paciente");
                 System.out.println("2 - Ver consultas agendadas (futuras)");
@@ -170,8 +172,9 @@ public class DoctorView {
                     break;
                 case 2:
                     patient = PatientView.registerNewPatient(scanner);
-                    if (patient != null) {
+                    if (patient != null && PatientIndex.get(patient.getCpf()) == null) {
                         allPatients.add(patient);
+                        PatientIndex.put(patient);
                     }
                     break;
                 default:
@@ -199,24 +202,13 @@ public class DoctorView {
                 LocalTime appointmentTime = LocalTime.parse(timeStr, timeFormatter);
 
                 // Verificar se a data é no futuro
-                if (appointmentDate.isBefore(LocalDate.now())) {
+                if (appointmentDate.isBefore(AppointmentClock.today())) {
                     System.out.println("A data da consulta deve ser futura.");
                     return;
                 }
 
                 // Verificar se já existe consulta no mesmo horário para o médico
-                boolean conflictFound = false;
-                for (Appointment app : allAppointments) {
-                    if (app.getDoctorCRM().equals(doctor.getCode()) &&
-                            app.getDate().equals(appointmentDate) &&
-                            app.getTime().equals(appointmentTime) &&
-                            app.getStatus() == AppointmentStatus.PENDING) {
-                        conflictFound = true;
-                        break;
-                    }
-                }
-
-                if (conflictFound) {
+                if (DoctorSchedule.isSlotTaken(doctor.getCode(), appointmentDate, appointmentTime, null)) {
                     System.out.println("Já existe uma consulta agendada neste horário.");
                     return;
                 }
@@ -230,10 +222,14 @@ public class DoctorView {
                         AppointmentStatus.PENDING
                 );
 
-                appointment.saveToCSVFile(APPOINTMENT_CSV, true);
-
-                // Adicionar a consulta à lista geral
-                allAppointments.add(appointment);
+                // Registrar a consulta e adicioná-la à lista geral e à lista do paciente
+                try {
+                    AppointmentStore.create(appointment, allAppointments);
+                } catch (IOException e) {
+                    System.out.println("Erro ao salvar a consulta: " + e.getMessage());
+                    return;
+                }
+                PatientIndex.attach(appointment);
 
                 System.out.println("\nConsulta agendada com sucesso!");
                 System.out.println("Paciente: " + patient.getName());
@@ -257,24 +253,18 @@ public class DoctorView {
      * @param scanner Scanner para leitura
      */
     private static void viewFutureAppointments(Doctor doctor, List<Appointment> allAppointments, List<Patient> allPatients, Scanner scanner) {
-        List<Appointment> futureAppointments = new ArrayList<>();
-
-        // Filtrar consultas pendentes (futuras) do médico
-        for (Appointment app : allAppointments) {
-            if (app.getDoctorCRM().equals(doctor.getCode()) && app.getStatus() == AppointmentStatus.PENDING) {
-                futureAppointments.add(app);
-            }
-        }
+        // Consultas pendentes (futuras) do médico, ordenadas por data/hora
+        List<Appointment> futureAppointments = AppointmentQuery.over(allAppointments)
+                .doctor(doctor.getCode())
+                .status(AppointmentStatus.PENDING)
+                .orderByDateTime()
+                .list();
 
         if (futureAppointments.isEmpty()) {
             System.out.println("Não há consultas agendadas para você.");
             return;
         }
 
-        // Ordenar por data/hora
-        futureAppointments.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime));
-
         System.out.println("\nSuas consultas agendadas:");
 
         for (int i = 0; i < futureAppointments.size(); i++) {
@@ -353,7 +343,7 @@ public class DoctorView {
                 return;
             }
 
-            LocalDate endDate = LocalDate.now();
+            LocalDate endDate = AppointmentClock.today();
             LocalDate startDate;
 
             switch (option) {
@@ -407,39 +397,37 @@ public class DoctorView {
      */
     private static void showAppointmentsByPeriod(Doctor doctor, List<Appointment> allAppointments, List<Patient> allPatients,
                                                  LocalDate startDate, LocalDate endDate, Scanner scanner) {
-        List<Appointment> filtered = new ArrayList<>();
-
-        for (Appointment appointment : allAppointments) {
-            if (appointment.getDoctorCRM().equals(doctor.getCode()) &&
-                    (appointment.getStatus() == AppointmentStatus.COMPLETED ||
-                            (appointment.hasOccurred() && appointment.getStatus() != AppointmentStatus.CANCELLED)) &&
-                    appointment.isInPeriod(startDate, endDate)) {
-                filtered.add(appointment);
-            }
-        }
-
-        if (filtered.isEmpty()) {
+        // Consultas realizadas no período, mais recentes primeiro
+        // (as pendentes vencidas são marcadas como realizadas antes do filtro)
+        AppointmentStore.completeDue();
+        PageCursor<Appointment> cursor;
+        if (startDate.isBefore(AppointmentArchive.hotStart())) {
+            // O período alcança o histórico arquivado: os meses antigos são lidos conforme as páginas avançam
+            cursor = PageCursor.over(AppointmentStore.completedHistory(allAppointments, doctor.getCode(), null,
+                    startDate, endDate), 10);
+        } else {
+            AppointmentQuery filtered = AppointmentQuery.over(allAppointments)
+                    .doctor(doctor.getCode())
+                    .status(AppointmentStatus.COMPLETED)
+                    .between(startDate, endDate)
+                    .newestFirst();
+            cursor = PageCursor.over(filtered, 10);
+        }
+
+        if (cursor.current().isEmpty()) {
             System.out.println("Nenhuma consulta encontrada no período informado.");
             return;
         }
 
-        // Ordenar por data/hora (mais recente primeiro)
-        filtered.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime).reversed());
-
         System.out.println("\nConsultas realizadas no período de " +
                 startDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) +
                 " a " +
                 endDate.format(DateTimeFormatter.ofPattern("dd/MM/yyyy")) + ":");
 
-        List<String> formattedAppointments = new ArrayList<>();
-        for (Appointment ap : filtered) {
-            String patientName = getPatientName(allPatients, ap.getPatientCPF());
-            formattedAppointments.add(ap.getFormattedDateTime() + " - Paciente: " + patientName +
-                    " (CPF: " + UIUtils.formatCPF(ap.getPatientCPF()) + ")");
-        }
-
-        UIUtils.paginateList(formattedAppointments, 10, scanner);
+        // Só as consultas da página exibida são formatadas
+        UIUtils.paginate(cursor, ap -> ap.getFormattedDateTime() + " - Paciente: " +
+                getPatientName(allPatients, ap.getPatientCPF()) +
+                " (CPF: " + UIUtils.formatCPF(ap.getPatientCPF()) + ")", scanner);
     }
 
     /**
@@ -466,29 +454,19 @@ public class DoctorView {
                 return;
             }
 
-            List<Appointment> filteredAppointments = new ArrayList<>();
-            LocalDate today = LocalDate.now();
+            // Consultas pendentes do médico, ordenadas por data/hora
+            AppointmentQuery query = AppointmentQuery.over(allAppointments)
+                    .doctor(doctor.getCode())
+                    .status(AppointmentStatus.PENDING)
+                    .orderByDateTime();
+            LocalDate today = AppointmentClock.today();
 
             switch (option) {
                 case 1: // Consultas da semana
-                    LocalDate endOfWeek = today.plusDays(7);
-                    for (Appointment app : allAppointments) {
-                        if (app.getDoctorCRM().equals(doctor.getCode()) &&
-                                app.getStatus() == AppointmentStatus.PENDING &&
-                                app.isInPeriod(today, endOfWeek)) {
-                            filteredAppointments.add(app);
-                        }
-                    }
+                    query.between(today, today.plusDays(7));
                     break;
                 case 2: // Consultas do mês
-                    LocalDate endOfMonth = today.plusMonths(1);
-                    for (Appointment app : allAppointments) {
-                        if (app.getDoctorCRM().equals(doctor.getCode()) &&
-                                app.getStatus() == AppointmentStatus.PENDING &&
-                                app.isInPeriod(today, endOfMonth)) {
-                            filteredAppointments.add(app);
-                        }
-                    }
+                    query.between(today, today.plusMonths(1));
                     break;
                 case 3: // Consultas por paciente
                     Patient patient = PatientView.selectExistingPatient(allPatients, scanner);
@@ -496,28 +474,19 @@ public class DoctorView {
                         return;
                     }
 
-                    for (Appointment app : allAppointments) {
-                        if (app.getDoctorCRM().equals(doctor.getCode()) &&
-                                app.getPatientCPF().equals(patient.getCpf()) &&
-                                app.getStatus() == AppointmentStatus.PENDING) {
-                            filteredAppointments.add(app);
-                        }
-                    }
+                    query.patient(patient.getCpf());
                     break;
                 default:
                     System.out.println("Opção inválida!");
                     return;
             }
 
+            List<Appointment> filteredAppointments = query.list();
             if (filteredAppointments.isEmpty()) {
                 System.out.println("Nenhuma consulta encontrada para o filtro selecionado.");
                 return;
             }
 
-            // Ordenar por data/hora
-            filteredAppointments.sort(Comparator.comparing(Appointment::getDate)
-                    .thenComparing(Appointment::getTime));
-
             System.out.println("\nConsultas disponíveis para remarcação:");
             for (int i = 0; i < filteredAppointments.size(); i++) {
                 Appointment app = filteredAppointments.get(i);
@@ -571,61 +540,21 @@ public class DoctorView {
             LocalTime newTime = LocalTime.parse(timeStr, timeFormatter);
 
             // Verificar se a data é no futuro
-            if (newDate.isBefore(LocalDate.now())) {
+            if (newDate.isBefore(AppointmentClock.today())) {
                 System.out.println("A data da consulta deve ser futura.");
                 return;
             }
 
             // Verificar se já existe consulta no mesmo horário para o médico
-            boolean conflictFound = false;
-            for (Appointment app : allAppointments) {
-                if (app != appointment &&
-                        app.getDoctorCRM().equals(doctor.getCode()) &&
-                        app.getDate().equals(newDate) &&
-                        app.getTime().equals(newTime) &&
-                        app.getStatus() == AppointmentStatus.PENDING) {
-                    conflictFound = true;
-                    break;
-                }
-            }
-
-            if (conflictFound) {
+            if (DoctorSchedule.isSlotTaken(doctor.getCode(), newDate, newTime, appointment)) {
                 System.out.println("Já existe uma consulta agendada neste horário.");
                 return;
             }
 
-            // Remover a consulta antiga
-            int indexToRemove = -1;
-            for (int i = 0; i < allAppointments.size(); i++) {
-                Appointment app = allAppointments.get(i);
-                if (app.getDate().equals(appointment.getDate()) &&
-                        app.getTime().equals(appointment.getTime()) &&
-                        app.getPatientCPF().equals(appointment.getPatientCPF()) &&
-                        app.getDoctorCRM().equals(appointment.getDoctorCRM())) {
-
-                    indexToRemove = i;
-                    break;
-                }
-            }
-
-            if (indexToRemove != -1) {
-                // Criar nova consulta com os mesmos dados, exceto data e hora
-                Appointment newAppointment = new Appointment(
-                        newDate,
-                        newTime,
-                        appointment.getPatientCPF(),
-                        appointment.getDoctorCRM(),
-                        AppointmentStatus.PENDING
-                );
-
-                // Substituir na lista
-                allAppointments.set(indexToRemove, newAppointment);
-
-                // Salvar a lista atualizada
-                Appointment.saveAppointmentsToCSV(allAppointments, APPOINTMENT_CSV);
-
+            // Mover a consulta para a nova data e hora, mantendo o mesmo id
+            if (AppointmentStore.reschedule(appointment, newDate, newTime)) {
                 System.out.println("Consulta remarcada com sucesso!");
-                System.out.println("Nova data e hora: " + newAppointment.getFormattedDateTime());
+                System.out.println("Nova data e hora: " + appointment.getFormattedDateTime());
             } else {
                 System.out.println("Erro: Consulta não encontrada na lista.");
             }
@@ -647,24 +576,18 @@ public class DoctorView {
      * @param scanner Scanner para leitura
      */
     private static void cancelAppointmentForDoctor(Doctor doctor, List<Appointment> allAppointments, List<Patient> allPatients, Scanner scanner) {
-        List<Appointment> futureAppointments = new ArrayList<>();
-
-        // Filtrar consultas pendentes (futuras) do médico
-        for (Appointment app : allAppointments) {
-            if (app.getDoctorCRM().equals(doctor.getCode()) && app.getStatus() == AppointmentStatus.PENDING) {
-                futureAppointments.add(app);
-            }
-        }
+        // Consultas pendentes (futuras) do médico, ordenadas por data/hora
+        List<Appointment> futureAppointments = AppointmentQuery.over(allAppointments)
+                .doctor(doctor.getCode())
+                .status(AppointmentStatus.PENDING)
+                .orderByDateTime()
+                .list();
 
         if (futureAppointments.isEmpty()) {
             System.out.println("Não há consultas agendadas para cancelar.");
             return;
         }
 
-        // Ordenar por data/hora
-        futureAppointments.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime));
-
         System.out.println("\nConsultas que podem ser canceladas:");
 
         for (int i = 0; i < futureAppointments.size(); i++) {
@@ -710,41 +633,33 @@ public class DoctorView {
      * @param scanner Scanner para leitura
      */
     private static void viewAllDoctorPatients(Doctor doctor, List<Appointment> allAppointments, List<Patient> allPatients, Scanner scanner) {
-        // Conjunto para evitar duplicatas
-        Set<String> patientCPFs = new HashSet<>();
+        // Pacientes do médico direto do índice de relações (já sem duplicatas)
+        List<DoctorPatientIndex.Relationship> relationships = DoctorPatientIndex.patientsOf(doctor.getCode());
 
-        // Encontrar todos os CPFs dos pacientes atendidos pelo médico
-        for (Appointment app : allAppointments) {
-            if (app.getDoctorCRM().equals(doctor.getCode())) {
-                patientCPFs.add(app.getPatientCPF());
-            }
-        }
-
-        if (patientCPFs.isEmpty()) {
+        if (relationships.isEmpty()) {
             System.out.println("Você ainda não atendeu nenhum paciente.");
             return;
         }
 
         // Criar lista de pacientes do médico
         List<Patient> doctorPatients = new ArrayList<>();
-        for (String cpf : patientCPFs) {
-            for (Patient p : allPatients) {
-                if (p.getCpf().equals(cpf)) {
-                    doctorPatients.add(p);
-                    break;
-                }
+        for (DoctorPatientIndex.Relationship relationship : relationships) {
+            Patient p = PatientIndex.get(relationship.getPatientCPF());
+            if (p != null) {
+                doctorPatients.add(p);
             }
         }
 
         // Ordenar alfabeticamente
         doctorPatients.sort(Comparator.comparing(Patient::getName));
 
-        System.out.println("\nSeus pacientes (ordem alfabética):");
-
+        TableRenderer table = new TableRenderer("Nº", "Nome", "CPF").alignRight(0);
+        table.line("\nSeus pacientes (ordem alfabética):");
         for (int i = 0; i < doctorPatients.size(); i++) {
             Patient p = doctorPatients.get(i);
-            System.out.println((i + 1) + " - " + p.getName() + " (CPF: " + UIUtils.formatCPF(p.getCpf()) + ")");
+            table.row(i + 1, p.getName(), UIUtils.formatCPF(p.getCpf()));
         }
+        table.flush();
 
         // Opção para ver detalhes de um paciente específico
         System.out.print("\nDeseja ver detalhes de algum paciente? (s/n): ");
@@ -771,29 +686,18 @@ public class DoctorView {
         System.out.println("Nome: " + patient.getName());
         System.out.println("CPF: " + UIUtils.formatCPF(patient.getCpf()));
 
-        // Filtrar consultas deste paciente com este médico
-        List<Appointment> patientAppointments = new ArrayList<>();
-        for (Appointment app : allAppointments) {
-            if (app.getPatientCPF().equals(patient.getCpf()) &&
-                    app.getDoctorCRM().equals(doctor.getCode())) {
-                patientAppointments.add(app);
-            }
-        }
+        // Consultas deste paciente com este médico, mais recentes primeiro (inclusive as arquivadas)
+        PageCursor<Appointment> cursor = PageCursor.over(
+                AppointmentStore.history(allAppointments, doctor.getCode(), patient.getCpf(), null, null, null), 10);
 
-        if (patientAppointments.isEmpty()) {
+        if (cursor.current().isEmpty()) {
             System.out.println("Nenhuma consulta encontrada para este paciente.");
             return;
         }
 
-        // Ordenar por data (mais recente primeiro)
-        patientAppointments.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime).reversed());
-
         System.out.println("\nHistórico de consultas:");
-        for (Appointment app : patientAppointments) {
-            System.out.println("- " + app.getFormattedDateTime() +
-                    " | Status: " + app.getStatus().getDescription());
-        }
+        UIUtils.paginate(cursor, app -> "- " + app.getFormattedDateTime() +
+                " | Status: " + app.getStatus().getDescription(), scanner);
     }
 
     /**
@@ -819,55 +723,24 @@ public class DoctorView {
         }
 
         // Data de corte (hoje menos o número de meses)
-        LocalDate cutoffDate = LocalDate.now().minusMonths(months);
+        LocalDate cutoffDate = AppointmentClock.today().minusMonths(months);
 
-        // Mapa para armazenar a data da última consulta de cada paciente
-        Map<String, LocalDate> lastAppointmentDates = new HashMap<>();
+        // Pares médico/paciente cuja última consulta não cancelada é anterior à data de corte
+        List<LastVisitTracker.Entry> inactive = LastVisitTracker.inactiveSince(doctor.getCode(), cutoffDate);
 
-        // Conjunto para todos os CPFs de pacientes atendidos pelo médico
-        Set<String> allPatientCPFs = new HashSet<>();
-
-        // Encontrar a data da última consulta para cada paciente
-        for (Appointment app : allAppointments) {
-            if (app.getDoctorCRM().equals(doctor.getCode())) {
-                String cpf = app.getPatientCPF();
-                allPatientCPFs.add(cpf);
-
-                // Verificar se a consulta não foi cancelada
-                if (app.getStatus() != AppointmentStatus.CANCELLED) {
-                    LocalDate appointmentDate = app.getDate();
-
-                    // Atualizar a data mais recente
-                    if (!lastAppointmentDates.containsKey(cpf) ||
-                            appointmentDate.isAfter(lastAppointmentDates.get(cpf))) {
-                        lastAppointmentDates.put(cpf, appointmentDate);
-                    }
-                }
-            }
-        }
-
-        // Filtrar pacientes sem consulta recente
-        List<String> inactiveCPFs = new ArrayList<>();
-        for (String cpf : allPatientCPFs) {
-            if (!lastAppointmentDates.containsKey(cpf) ||
-                    lastAppointmentDates.get(cpf).isBefore(cutoffDate)) {
-                inactiveCPFs.add(cpf);
-            }
-        }
-
-        if (inactiveCPFs.isEmpty()) {
+        if (inactive.isEmpty()) {
             System.out.println("Todos os seus pacientes tiveram consultas nos últimos " + months + " meses.");
             return;
         }
 
         // Obter os objetos Patient correspondentes
+        Map<String, LocalDate> lastAppointmentDates = new HashMap<>();
         List<Patient> inactivePatients = new ArrayList<>();
-        for (String cpf : inactiveCPFs) {
-            for (Patient p : allPatients) {
-                if (p.getCpf().equals(cpf)) {
-                    inactivePatients.add(p);
-                    break;
-                }
+        for (LastVisitTracker.Entry entry : inactive) {
+            Patient p = PatientIndex.get(entry.getPatientCPF());
+            if (p != null) {
+                inactivePatients.add(p);
+                lastAppointmentDates.put(p.getCpf(), entry.getLastVisit());
             }
         }
 
@@ -895,6 +768,12 @@ public class DoctorView {
      * @return Nome do médico ou "CRM não encontrado" se não encontrado
      */
     public static String getDoctorName(List<Doctor> doctors, String crm) {
+        Doctor registered = DoctorRegistry.findByCRM(crm);
+        if (registered != null) {
+            return registered.getName();
+        }
+
+        // Médico ainda não gravado no arquivo: procurar na lista recebida
         for (Doctor doctor : doctors) {
             if (doctor.getCode().equals(crm)) {
                 return doctor.getName();
@@ -912,12 +791,9 @@ public class DoctorView {
      */
     public static String getDoctorName(String crm) {
         try {
-            List<Doctor> doctors = Doctor.loadFromCSV(DOCTOR_CSV);
-
-            for (Doctor doctor : doctors) {
-                if (doctor.getCode().equals(crm)) {
-                    return doctor.getName();
-                }
+            Doctor doctor = DoctorRegistry.findByCRM(crm);
+            if (doctor != null) {
+                return doctor.getName();
             }
 
             return "CRM " + crm + " (Médico não encontrado)";
@@ -934,11 +810,7 @@ public class DoctorView {
      * @return Nome do paciente ou "(Paciente não encontrado)" se não encontrado
      */
     private static String getPatientName(List<Patient> allPatients, String cpf) {
-        for (Patient p : allPatients) {
-            if (p.getCpf().equals(cpf)) {
-                return p.getName();
-            }
-        }
-        return "(Paciente não encontrado)";
+        Patient patient = PatientIndex.get(cpf);
+        return patient != null ? patient.getName() : "(Paciente não encontrado)";
     }
 }
\ No newline at end of file
@@ -0,0 +1,304 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Gravação por anexação com confirmação em grupo.
+ * Cada arquivo de dados tem um único canal aberto durante toda a execução e uma fila
+ * de pedidos de gravação. Uma thread por arquivo junta os pedidos que chegaram enquanto
+ * a gravação anterior acontecia (até um limite de bytes e, opcionalmente, esperando uma
+ * janela de tempo), grava o lote com uma única escrita e, se configurado, um único
+ * force(). Quem pediu a gravação recebe um future que termina quando o registro está
+ * gravado, em vez de abrir, escrever e fechar o arquivo a cada registro.
+ * Cada lote é escrito com uma trava exclusiva no arquivo ({@link FileLock}), para que
+ * as posições devolvidas não se misturem com as gravações de outros processos. Quem
+ * substitui o arquivo por troca de nome (a compactação do log) faz isso com a mesma trava
+ * ({@link #lockCurrent}); o lote só é escrito se o arquivo travado ainda for o que está no lugar.
+ * Se o arquivo termina no meio de uma linha (gravação interrompida por uma queda), o lote
+ * começa em uma linha nova.
+ *
+ * As travas são do processo, não do canal: em sistemas como o Linux, fechar qualquer canal
+ * aberto no arquivo libera todas elas. Enquanto uma trava existe, o arquivo só é lido pelo
+ * canal dela, e nenhum outro é aberto e fechado nele.
+ *
+ * Propriedades: {@code storage.force} (force() por lote, padrão true),
+ * {@code storage.batchBytes} (tamanho máximo do lote) e
+ * {@code storage.batchWindowMicros} (espera por mais pedidos, padrão 0).
+ */
+public class GroupCommitWriter {
+
+    private static final boolean FORCE = Boolean.parseBoolean(System.getProperty("storage.force", "true"));
+    private static final int MAX_BATCH_BYTES = Integer.getInteger("storage.batchBytes", 64 * 1024);
+    private static final long BATCH_WINDOW_MICROS = Long.getLong("storage.batchWindowMicros", 0L);
+
+    // Mesma quebra de linha do FileWriter/PrintWriter usados no resto do sistema
+    private static final String LINE_SEPARATOR = System.lineSeparator();
+
+    private static final Map<Path, GroupCommitWriter> writers = new HashMap<>();
+    /** Identificação de um arquivo que não existe */
+    private static final Object MISSING = new Object();
+
+    private final Path path;
+    private final Charset charset;
+    private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+    private FileChannel channel;
+    private Object fileKey;
+    private ByteBuffer buffer = ByteBuffer.allocate(8192);
+
+    /**
+     * Pedido de gravação
+     */
+    private static final class Request {
+        final byte[] bytes;
+        final CompletableFuture<long[]> done = new CompletableFuture<>();
+
+        Request(byte[] bytes) {
+            this.bytes = bytes;
+        }
+    }
+
+    private GroupCommitWriter(Path path, Charset charset) {
+        this.path = path;
+        this.charset = charset;
+        Thread thread = new Thread(this::run, "group-commit-" + path.getFileName());
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Gravador do arquivo (um por arquivo durante toda a execução), na mesma codificação
+     * do FileWriter usado no resto do sistema
+     *
+     * @param filename Nome do arquivo
+     */
+    public static GroupCommitWriter forFile(String filename) {
+        return forFile(filename, Charset.defaultCharset());
+    }
+
+    /**
+     * Gravador do arquivo com uma codificação própria (vale a do primeiro pedido do arquivo)
+     *
+     * @param filename Nome do arquivo
+     * @param charset Codificação das linhas
+     */
+    public static synchronized GroupCommitWriter forFile(String filename, Charset charset) {
+        return writers.computeIfAbsent(Paths.get(filename).toAbsolutePath().normalize(),
+                path -> new GroupCommitWriter(path, charset));
+    }
+
+    /**
+     * Enfileira linhas para anexar ao arquivo (cada uma seguida de quebra de linha)
+     *
+     * @param lines Linhas a gravar, juntas e na ordem
+     * @return Future com as posições {início, fim} do lote gravado que contém as linhas
+     */
+    public CompletableFuture<long[]> append(List<String> lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines) {
+            text.append(line).append(LINE_SEPARATOR);
+        }
+
+        Request request = new Request(text.toString().getBytes(charset));
+        queue.add(request);
+        return request.done;
+    }
+
+    /**
+     * Anexa as linhas e espera até que estejam gravadas
+     *
+     * @param lines Linhas a gravar
+     * @return Posições {início, fim} do lote gravado
+     * @throws IOException se a gravação falhar
+     */
+    public long[] appendAndWait(List<String> lines) throws IOException {
+        return await(append(lines));
+    }
+
+    /**
+     * Espera a gravação de um pedido feito com {@link #append}
+     *
+     * @param done Future devolvido por append
+     * @return Posições {início, fim} do lote gravado
+     * @throws IOException se a gravação falhar
+     */
+    public long[] await(CompletableFuture<long[]> done) throws IOException {
+        try {
+            return done.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+            throw new IOException("Falha ao gravar em " + path.getFileName(), e.getCause());
+        }
+    }
+
+    /**
+     * Laço da thread do arquivo: junta os pedidos da fila em lotes e grava cada lote
+     */
+    private void run() {
+        List<Request> batch = new ArrayList<>();
+        while (true) {
+            try {
+                Request first = queue.take();
+                batch.add(first);
+                int bytes = first.bytes.length;
+
+                // Tudo o que chegou enquanto o lote anterior era gravado entra neste
+                long deadline = System.nanoTime() + TimeUnit.MICROSECONDS.toNanos(BATCH_WINDOW_MICROS);
+                while (bytes < MAX_BATCH_BYTES) {
+                    long wait = deadline - System.nanoTime();
+                    Request next = wait > 0 ? queue.poll(wait, TimeUnit.NANOSECONDS) : queue.poll();
+                    if (next == null) break;
+                    batch.add(next);
+                    bytes += next.bytes.length;
+                }
+
+                commit(batch, bytes);
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void commit(List<Request> batch, int bytes) {
+        if (buffer.capacity() < bytes) {
+            buffer = ByteBuffer.allocate(Math.max(bytes, buffer.capacity() << 1));
+        }
+        buffer.clear();
+        for (Request request : batch) {
+            buffer.put(request.bytes);
+        }
+        buffer.flip();
+
+        try {
+            // Outros processos anexam ao mesmo arquivo: com a trava, o tamanho lido é mesmo o início deste lote
+            long start;
+            long end;
+            FileLock lock = lockOpen();
+            try {
+                start = channel.size();
+                end = start;
+                if (start > 0 && !endsWithNewline(start)) {
+                    end += channel.write(ByteBuffer.wrap(LINE_SEPARATOR.getBytes(charset)), end);
+                }
+                while (buffer.hasRemaining()) {
+                    end += channel.write(buffer, end);
+                }
+            } finally {
+                lock.release();
+            }
+            if (FORCE) {
+                channel.force(false);
+            }
+
+            long[] range = {start, end};
+            for (Request request : batch) {
+                request.done.complete(range);
+            }
+        } catch (IOException e) {
+            closeQuietly();
+            for (Request request : batch) {
+                request.done.completeExceptionally(e);
+            }
+        }
+    }
+
+    private boolean endsWithNewline(long size) throws IOException {
+        ByteBuffer last = ByteBuffer.allocate(1);
+        return channel.read(last, size - 1) == 1 && last.get(0) == '\n';
+    }
+
+    /**
+     * Trava o arquivo pelo canal aberto, reabrindo se ele foi apagado ou substituído por
+     * outro processo (inclusive enquanto se esperava pela trava)
+     */
+    private FileLock lockOpen() throws IOException {
+        while (true) {
+            Object currentKey = fileKey(path);
+            if (channel == null || !channel.isOpen() || currentKey == MISSING || !Objects.equals(currentKey, fileKey)) {
+                closeQuietly();
+                channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+                fileKey = fileKey(path);
+                // Criado ou trocado entre a consulta e a abertura: não se sabe qual arquivo foi aberto
+                if (!Objects.equals(currentKey, fileKey)) {
+                    closeQuietly();
+                    continue;
+                }
+            }
+
+            FileLock lock = channel.lock();
+            if (Objects.equals(fileKey(path), fileKey)) {
+                return lock;
+            }
+            lock.release();
+        }
+    }
+
+    /**
+     * Trava exclusiva no arquivo que está no lugar, a mesma usada para gravar os lotes.
+     * Se outro processo trocar o arquivo enquanto se espera pela trava, o novo é travado.
+     *
+     * @param filename Nome do arquivo (criado vazio se não existir)
+     * @return Trava obtida; o conteúdo é lido pelo canal dela, e fechar o canal libera a trava
+     * @throws IOException se o arquivo não puder ser aberto
+     */
+    public static FileLock lockCurrent(String filename) throws IOException {
+        Path path = Paths.get(filename).toAbsolutePath().normalize();
+        while (true) {
+            Object key = fileKey(path);
+            FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                if (key != MISSING && Objects.equals(key, fileKey(path))) {
+                    FileLock lock = channel.lock();
+                    if (Objects.equals(key, fileKey(path))) {
+                        return lock;
+                    }
+                }
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+            channel.close();
+        }
+    }
+
+    /**
+     * Identificação do arquivo no sistema, que muda quando ele é substituído
+     * (null onde o sistema não a fornece, ex: Windows; {@link #MISSING} se não existir)
+     */
+    private static Object fileKey(Path path) throws IOException {
+        try {
+            return Files.readAttributes(path, BasicFileAttributes.class).fileKey();
+        } catch (NoSuchFileException e) {
+            return MISSING;
+        }
+    }
+
+    private void closeQuietly() {
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException ignored) {
+            // O canal será reaberto na próxima gravação
+        }
+        channel = null;
+    }
+}
@@ -0,0 +1,221 @@
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Data da última consulta não cancelada de cada paciente com cada médico,
+ * mantida a cada agendamento, cancelamento e remarcação pelo {@link AppointmentStore}.
+ * Os pares de cada médico ficam ordenados por essa data, de modo que "pacientes sem
+ * consulta desde a data de corte" é apenas o início do conjunto ordenado.
+ * Pacientes que só têm consultas canceladas ficam no começo (nunca consultaram).
+ */
+public class LastVisitTracker {
+
+    /** Dia usado para quem não tem consulta válida: antes de qualquer data */
+    private static final int NEVER = Integer.MIN_VALUE;
+
+    private static final Comparator<Entry> BY_LAST_DAY = Comparator.<Entry>comparingInt(entry -> entry.lastDay())
+            .thenComparingLong(entry -> entry.cpf);
+
+    private static final Map<String, TreeSet<Entry>> entriesByDoctor = new HashMap<>();
+    private static final Map<String, Map<Long, Entry>> entriesByPair = new HashMap<>();
+
+    /**
+     * Par médico/paciente, com os dias (epoch day) das consultas não canceladas em ordem
+     */
+    public static class Entry {
+        private final String doctorCRM;
+        private final long cpf;
+        private int[] days = new int[2];
+        private int size = 0;
+
+        Entry(String doctorCRM, long cpf) {
+            this.doctorCRM = doctorCRM;
+            this.cpf = cpf;
+        }
+
+        public String getDoctorCRM() {
+            return doctorCRM;
+        }
+
+        public String getPatientCPF() {
+            return AppointmentTable.cpfOf(cpf);
+        }
+
+        /**
+         * @return Data da última consulta não cancelada ou null se todas foram canceladas
+         */
+        public LocalDate getLastVisit() {
+            return size == 0 ? null : LocalDate.ofEpochDay(days[size - 1]);
+        }
+
+        private int lastDay() {
+            return size == 0 ? NEVER : days[size - 1];
+        }
+
+        private void addDay(int day) {
+            if (size == days.length) {
+                days = Arrays.copyOf(days, size << 1);
+            }
+            int position = Arrays.binarySearch(days, 0, size, day);
+            if (position < 0) position = -position - 1;
+            System.arraycopy(days, position, days, position + 1, size - position);
+            days[position] = day;
+            size++;
+        }
+
+        private void removeDay(int day) {
+            int position = Arrays.binarySearch(days, 0, size, day);
+            if (position < 0) return;
+            System.arraycopy(days, position + 1, days, position, size - position - 1);
+            size--;
+        }
+    }
+
+    /**
+     * Reconstrói o rastreador a partir da lista completa de consultas
+     *
+     * @param appointments Lista de consultas
+     */
+    public static synchronized void rebuild(List<Appointment> appointments) {
+        rebuild(Collections.emptyList(), appointments);
+    }
+
+    /**
+     * Reconstrói o rastreador a partir do histórico arquivado (ver {@link AppointmentArchive})
+     * e das consultas em memória. Do histórico arquivado só importa a última consulta não
+     * cancelada de cada par, já que consultas arquivadas não são mais canceladas nem remarcadas.
+     *
+     * @param archived Resumo do histórico arquivado, por par médico/paciente
+     * @param appointments Consultas em memória
+     */
+    public static synchronized void rebuild(Collection<AppointmentArchive.PairHistory> archived, List<Appointment> appointments) {
+        entriesByDoctor.clear();
+        entriesByPair.clear();
+
+        for (AppointmentArchive.PairHistory pair : archived) {
+            Entry entry = entryOf(pair.doctorCRM, PatientIndex.pack(pair.patientCPF));
+            if (entry != null && pair.lastValid != null) {
+                update(entry, NEVER, (int) pair.lastValid.toEpochDay());
+            }
+        }
+
+        for (Appointment appointment : appointments) {
+            add(appointment);
+        }
+    }
+
+    /**
+     * Registra uma nova consulta
+     *
+     * @param appointment Consulta registrada
+     */
+    public static synchronized void add(Appointment appointment) {
+        Entry entry = entryOf(appointment);
+        if (entry == null || appointment.getStatus() == AppointmentStatus.CANCELLED) return;
+        update(entry, NEVER, (int) appointment.getDate().toEpochDay());
+    }
+
+    /**
+     * Registra o cancelamento de uma consulta (chamado antes de mudar o status)
+     *
+     * @param appointment Consulta que será cancelada
+     */
+    public static synchronized void cancelled(Appointment appointment) {
+        Entry entry = entryOf(appointment);
+        if (entry == null || appointment.getStatus() == AppointmentStatus.CANCELLED) return;
+        update(entry, (int) appointment.getDate().toEpochDay(), NEVER);
+    }
+
+    /**
+     * Registra a remarcação de uma consulta (chamado depois de mudar a data)
+     *
+     * @param appointment Consulta remarcada
+     * @param previousDate Data anterior da consulta
+     */
+    public static synchronized void moved(Appointment appointment, LocalDate previousDate) {
+        Entry entry = entryOf(appointment);
+        if (entry == null || appointment.getStatus() == AppointmentStatus.CANCELLED) return;
+        update(entry, (int) previousDate.toEpochDay(), (int) appointment.getDate().toEpochDay());
+    }
+
+    /**
+     * Pacientes do médico cuja última consulta não cancelada é anterior à data de corte
+     * (incluindo os que só têm consultas canceladas)
+     *
+     * @param crm CRM do médico
+     * @param cutoffDate Data de corte
+     * @return Pares médico/paciente, da consulta mais antiga para a mais recente
+     */
+    public static synchronized List<Entry> inactiveSince(String crm, LocalDate cutoffDate) {
+        TreeSet<Entry> entries = entriesByDoctor.get(crm);
+        if (entries == null) return new ArrayList<>();
+        return new ArrayList<>(entries.headSet(probe(cutoffDate), false));
+    }
+
+    /**
+     * Relatório de pacientes inativos de todos os médicos de uma vez.
+     * Cada médico é processado em paralelo no pool comum; o rastreador fica bloqueado
+     * para alterações enquanto o relatório é montado.
+     *
+     * @param cutoffDate Data de corte
+     * @return Pacientes inativos por CRM (somente médicos com algum paciente inativo), em ordem de CRM
+     */
+    public static synchronized Map<String, List<Entry>> inactiveSinceByDoctor(LocalDate cutoffDate) {
+        Entry probe = probe(cutoffDate);
+
+        Map<String, List<Entry>> report = new LinkedHashMap<>();
+        entriesByDoctor.entrySet().parallelStream()
+                .map(doctor -> Map.entry(doctor.getKey(), new ArrayList<>(doctor.getValue().headSet(probe, false))))
+                .filter(doctor -> !doctor.getValue().isEmpty())
+                .sorted(Map.Entry.comparingByKey())
+                .forEachOrdered(doctor -> report.put(doctor.getKey(), doctor.getValue()));
+        return report;
+    }
+
+    /**
+     * Marcador de busca: vem antes de qualquer par cuja última consulta seja na data de corte ou depois
+     */
+    private static Entry probe(LocalDate cutoffDate) {
+        Entry probe = new Entry(null, Long.MIN_VALUE);
+        probe.addDay((int) cutoffDate.toEpochDay());
+        return probe;
+    }
+
+    /**
+     * Troca um dia do par por outro, reposicionando o par na ordem do médico se a última data mudou
+     */
+    private static void update(Entry entry, int removedDay, int addedDay) {
+        TreeSet<Entry> entries = entriesByDoctor.computeIfAbsent(entry.doctorCRM, key -> new TreeSet<>(BY_LAST_DAY));
+        entries.remove(entry);
+        if (removedDay != NEVER) entry.removeDay(removedDay);
+        if (addedDay != NEVER) entry.addDay(addedDay);
+        entries.add(entry);
+    }
+
+    private static Entry entryOf(Appointment appointment) {
+        return entryOf(appointment.getDoctorCRM(), PatientIndex.pack(appointment.getPatientCPF()));
+    }
+
+    private static Entry entryOf(String crm, long cpf) {
+        if (crm == null || cpf < 0) return null;
+
+        Map<Long, Entry> patients = entriesByPair.computeIfAbsent(crm, key -> new HashMap<>());
+        Entry entry = patients.get(cpf);
+        if (entry == null) {
+            entry = new Entry(crm, cpf);
+            patients.put(cpf, entry);
+            // Já entra no conjunto ordenado, mesmo sem consulta válida (nunca consultou)
+            entriesByDoctor.computeIfAbsent(crm, key -> new TreeSet<>(BY_LAST_DAY)).add(entry);
+        }
+        return entry;
+    }
+}
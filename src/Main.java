@@ -21,12 +21,16 @@ public class Main {
             // Carregamento dos dados
             List<Doctor> doctors = Doctor.loadFromCSV("doctors_clean.csv");
             List<Patient> patients = Patient.loadFromCSV("patients.csv");
-            List<Appointment> appointments = Appointment.loadFromCSV("appointments.csv");
+            List<Appointment> appointments = AppointmentStore.load("appointments.csv");
             associateAppointmentsToPatients(patients, appointments);
 
+            // Alterações feitas por outros balcões nos mesmos arquivos
+            DataWatcher.start(doctors, patients, appointments);
+
             int option = 0;
             while (option != -1) {
                 try {
+                    DataWatcher.sync();
                     System.out.println("\nQual painel você gostaria de acessar?");
                     System.out.println("1 - Administrador");
                     System.out.println("2 - Sou Paciente");
@@ -37,17 +41,17 @@ public class Main {
                     switch (option) {
                         case 1:
                             AdminView.checkOptions(doctors, patients, appointments,true, scanner);
-                            associateAppointmentsToPatients(patients, appointments);
                             break;
                         case 2:
-                            PatientView.checkOptions(patients, true, scanner);
-                            associateAppointmentsToPatients(patients, appointments);
+                            PatientView.checkOptions(patients, appointments, true, scanner);
                             break;
                         case 3:
                             DoctorView.checkOptions(doctors, appointments, patients, true, scanner);
                             break;
                         case 0:
                             System.out.println("Encerrando o sistema...");
+                            // Incorporar o log de alterações ao snapshot antes de sair
+                            AppointmentLog.compact("appointments.csv");
                             option = -1;
                             break;
                         default:
@@ -70,12 +74,15 @@ public class Main {
     }
 
     /**
-     * Associa as consultas aos seus respectivos pacientes
+     * Associa as consultas aos seus respectivos pacientes.
+     * Reconstrói o índice de CPF e faz uma única passada pelas consultas.
      *
      * @param patients Lista de pacientes
      * @param appointments Lista de consultas
      */
     public static void associateAppointmentsToPatients(List<Patient> patients, List<Appointment> appointments) {
+        PatientIndex.rebuild(patients);
+
         // Limpar listas de consultas existentes para evitar duplicatas
         for (Patient patient : patients) {
             patient.getAppointmentList().clear();
@@ -83,11 +90,9 @@ public class Main {
 
         // Associar cada consulta ao paciente correspondente
         for (Appointment appointment : appointments) {
-            for (Patient patient : patients) {
-                if (patient.getCpf().equals(appointment.getPatientCPF())) {
-                    patient.addAppointment(appointment);
-                    break;
-                }
+            Patient patient = PatientIndex.get(appointment.getPatientCPF());
+            if (patient != null) {
+                patient.addAppointment(appointment);
             }
         }
     }
@@ -0,0 +1,178 @@
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Cursor de paginação que busca os itens sob demanda, uma página de cada vez.
+ * Cada página é lida a partir da última posição da página anterior (a "âncora"),
+ * então avançar, voltar ou saltar para uma página só lê as páginas necessárias;
+ * guardam-se apenas os itens da página atual e uma âncora por página já visitada.
+ *
+ * @param <T> Tipo dos itens
+ */
+public class PageCursor<T> {
+
+    /**
+     * Origem dos itens de uma página
+     *
+     * @param <T> Tipo dos itens
+     */
+    public interface Source<T> {
+        /**
+         * @param after Último item da página anterior ou null na primeira página
+         * @param offset Posição do primeiro item da página (para origens sem continuação por item)
+         * @param limit Quantidade máxima de itens
+         * @return Itens da página, na ordem de exibição
+         */
+        List<T> fetch(T after, int offset, int limit);
+    }
+
+    private final Source<T> source;
+    private final int pageSize;
+    private final int totalItems;
+
+    // anchors.get(n) = último item antes da página n + 1 (null para a primeira)
+    private final List<T> anchors = new ArrayList<>();
+    private List<T> page;
+    private boolean hasNext;
+    private int lastPage = -1;
+
+    private PageCursor(Source<T> source, int pageSize, int totalItems) {
+        this.source = source;
+        this.pageSize = Math.max(1, pageSize);
+        this.totalItems = totalItems;
+        anchors.add(null);
+        load();
+    }
+
+    /**
+     * Cursor sobre uma origem qualquer
+     *
+     * @param source Origem das páginas
+     * @param pageSize Itens por página
+     */
+    public static <T> PageCursor<T> of(Source<T> source, int pageSize) {
+        return new PageCursor<>(source, pageSize, -1);
+    }
+
+    /**
+     * Cursor sobre uma lista já carregada (a quantidade de páginas é conhecida)
+     *
+     * @param list Lista de itens
+     * @param pageSize Itens por página
+     */
+    public static <T> PageCursor<T> over(List<T> list, int pageSize) {
+        return new PageCursor<>((after, offset, limit) ->
+                new ArrayList<>(list.subList(Math.min(offset, list.size()), Math.min(offset + limit, list.size()))),
+                pageSize, list.size());
+    }
+
+    /**
+     * Cursor sobre um iterador: só consome os itens das páginas já visitadas
+     *
+     * @param iterator Iterador dos itens
+     * @param pageSize Itens por página
+     */
+    public static <T> PageCursor<T> over(Iterator<T> iterator, int pageSize) {
+        List<T> consumed = new ArrayList<>();
+        return new PageCursor<>((after, offset, limit) -> {
+            while (consumed.size() < offset + limit && iterator.hasNext()) {
+                consumed.add(iterator.next());
+            }
+            return new ArrayList<>(consumed.subList(Math.min(offset, consumed.size()),
+                    Math.min(offset + limit, consumed.size())));
+        }, pageSize, -1);
+    }
+
+    /**
+     * Cursor sobre uma consulta ordenada: cada página continua depois do último item da anterior
+     *
+     * @param query Consulta com ordenação definida (o limite é controlado pelo cursor)
+     * @param pageSize Itens por página
+     */
+    public static PageCursor<Appointment> over(AppointmentQuery query, int pageSize) {
+        return new PageCursor<>((after, offset, limit) -> query.startAfter(after).limit(limit).list(), pageSize, -1);
+    }
+
+    /**
+     * @return Itens da página atual
+     */
+    public List<T> current() {
+        return page;
+    }
+
+    /**
+     * @return Número da página atual (começando em 1)
+     */
+    public int pageNumber() {
+        return anchors.size();
+    }
+
+    /**
+     * @return Quantidade de páginas ou -1 se só for conhecida ao chegar na última
+     */
+    public int totalPages() {
+        if (totalItems >= 0) return Math.max(1, (totalItems + pageSize - 1) / pageSize);
+        return lastPage;
+    }
+
+    public boolean hasNext() {
+        return hasNext;
+    }
+
+    public boolean hasPrevious() {
+        return anchors.size() > 1;
+    }
+
+    /**
+     * Avança para a próxima página
+     *
+     * @return false se já estava na última
+     */
+    public boolean next() {
+        if (!hasNext) return false;
+        anchors.add(page.get(page.size() - 1));
+        load();
+        return true;
+    }
+
+    /**
+     * Volta para a página anterior
+     *
+     * @return false se já estava na primeira
+     */
+    public boolean previous() {
+        if (!hasPrevious()) return false;
+        anchors.remove(anchors.size() - 1);
+        load();
+        return true;
+    }
+
+    /**
+     * Vai para uma página (ou para a última, se a pedida não existir).
+     * Para frente, as páginas intermediárias são lidas mas não exibidas.
+     *
+     * @param number Número da página (começando em 1)
+     */
+    public void goTo(int number) {
+        int target = Math.max(1, number);
+        if (target < pageNumber()) {
+            anchors.subList(target, anchors.size()).clear();
+            load();
+            return;
+        }
+        while (pageNumber() < target && next()) {
+            // Avança até a página pedida
+        }
+    }
+
+    /**
+     * Lê a página da âncora atual, com um item a mais para saber se existe a próxima
+     */
+    private void load() {
+        List<T> fetched = source.fetch(anchors.get(anchors.size() - 1), (anchors.size() - 1) * pageSize, pageSize + 1);
+        hasNext = fetched.size() > pageSize;
+        page = hasNext ? new ArrayList<>(fetched.subList(0, pageSize)) : fetched;
+        if (!hasNext) lastPage = pageNumber();
+    }
+}
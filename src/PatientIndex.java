@@ -0,0 +1,189 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Índice de pacientes por CPF compartilhado por todo o processo.
+ * O CPF de 11 dígitos é compactado em um long primitivo e guardado em uma
+ * tabela de endereçamento aberto (sondagem linear), sem criar objetos para as
+ * chaves. Substitui as buscas lineares na lista de pacientes.
+ */
+public class PatientIndex {
+
+    /** Marca de posição vazia (um CPF compactado nunca é negativo) */
+    private static final long EMPTY = -1L;
+    private static final int INITIAL_CAPACITY = 256;
+
+    private static long[] keys = newKeyTable(INITIAL_CAPACITY);
+    private static Patient[] values = new Patient[INITIAL_CAPACITY];
+    private static int size = 0;
+
+    /**
+     * Compacta um CPF de 11 dígitos em um long
+     *
+     * @param cpf CPF contendo somente dígitos
+     * @return CPF compactado ou -1 se o CPF for inválido
+     */
+    public static long pack(String cpf) {
+        if (cpf == null || cpf.length() != 11) return EMPTY;
+
+        long packed = 0;
+        for (int i = 0; i < 11; i++) {
+            char c = cpf.charAt(i);
+            if (c < '0' || c > '9') return EMPTY;
+            packed = packed * 10 + (c - '0');
+        }
+        return packed;
+    }
+
+    /**
+     * Reconstrói o índice a partir da lista completa de pacientes
+     *
+     * @param patients Lista de pacientes
+     */
+    public static synchronized void rebuild(List<Patient> patients) {
+        int capacity = INITIAL_CAPACITY;
+        while (capacity < patients.size() * 2) {
+            capacity <<= 1;
+        }
+
+        keys = newKeyTable(capacity);
+        values = new Patient[capacity];
+        size = 0;
+
+        for (Patient patient : patients) {
+            insert(patient);
+        }
+        PatientNameIndex.rebuild(patients);
+    }
+
+    /**
+     * Busca um paciente pelo CPF
+     *
+     * @param cpf CPF do paciente
+     * @return Paciente encontrado ou null se não encontrado
+     */
+    public static synchronized Patient get(String cpf) {
+        long key = pack(cpf);
+        if (key == EMPTY) return null;
+
+        int slot = findSlot(key);
+        return keys[slot] == key ? values[slot] : null;
+    }
+
+    /**
+     * Insere ou substitui um paciente no índice
+     *
+     * @param patient Paciente a indexar
+     */
+    public static synchronized void put(Patient patient) {
+        insert(patient);
+        PatientNameIndex.add(patient);
+    }
+
+    private static void insert(Patient patient) {
+        long key = pack(patient.getCpf());
+        if (key == EMPTY) return;
+
+        int slot = findSlot(key);
+        if (keys[slot] == key) {
+            values[slot] = patient;
+            return;
+        }
+
+        keys[slot] = key;
+        values[slot] = patient;
+        size++;
+
+        if (size * 2 > keys.length) {
+            resize(keys.length << 1);
+        }
+    }
+
+    /**
+     * Remove um paciente do índice
+     *
+     * @param cpf CPF do paciente
+     */
+    public static synchronized void remove(String cpf) {
+        long key = pack(cpf);
+        if (key == EMPTY) return;
+
+        int slot = findSlot(key);
+        if (keys[slot] != key) return;
+
+        PatientNameIndex.remove(cpf);
+        keys[slot] = EMPTY;
+        values[slot] = null;
+        size--;
+
+        // Reposicionar as entradas seguintes do mesmo agrupamento (remoção sem lápides)
+        int mask = keys.length - 1;
+        int next = (slot + 1) & mask;
+        while (keys[next] != EMPTY) {
+            long movedKey = keys[next];
+            Patient movedValue = values[next];
+            keys[next] = EMPTY;
+            values[next] = null;
+
+            int target = findSlot(movedKey);
+            keys[target] = movedKey;
+            values[target] = movedValue;
+
+            next = (next + 1) & mask;
+        }
+    }
+
+    /**
+     * Associa uma única consulta ao seu paciente, se ele estiver cadastrado
+     *
+     * @param appointment Consulta recém-criada
+     */
+    public static void attach(Appointment appointment) {
+        Patient patient = get(appointment.getPatientCPF());
+        if (patient != null && !patient.getAppointmentList().contains(appointment)) {
+            patient.addAppointment(appointment);
+        }
+    }
+
+    /**
+     * Encontra a posição da chave ou a primeira posição livre da sua sequência de sondagem
+     */
+    private static int findSlot(long key) {
+        int mask = keys.length - 1;
+        int slot = hash(key) & mask;
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private static void resize(int capacity) {
+        long[] oldKeys = keys;
+        Patient[] oldValues = values;
+
+        keys = newKeyTable(capacity);
+        values = new Patient[capacity];
+
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != EMPTY) {
+                int slot = findSlot(oldKeys[i]);
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Espalha os bits do CPF para evitar agrupamentos na tabela
+     */
+    private static int hash(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private static long[] newKeyTable(int capacity) {
+        long[] table = new long[capacity];
+        Arrays.fill(table, EMPTY);
+        return table;
+    }
+}
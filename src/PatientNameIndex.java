@@ -0,0 +1,250 @@
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Índice invertido de trigramas sobre os nomes dos pacientes.
+ * Cada sequência de 3 caracteres do nome (sem acentos e em minúsculas) aponta para a lista ordenada
+ * dos pacientes que a contêm. Uma busca por trecho do nome cruza as listas dos
+ * trigramas do trecho, começando pela menor, e só confere o nome dos candidatos
+ * que sobraram. Mantém também o índice fonético usado quando nenhum nome contém
+ * o trecho digitado. O índice é mantido pelo {@link PatientIndex}.
+ */
+public class PatientNameIndex {
+
+    private static final int[] EMPTY = new int[0];
+
+    // Documento = posição do paciente em docs; posições removidas ficam null até a próxima reconstrução
+    private static Patient[] docs = new Patient[256];
+    private static String[] normalizedNames = new String[256];
+    private static int docCount = 0;
+    private static int removedCount = 0;
+
+    private static final Map<Long, Integer> docByCpf = new HashMap<>();
+    private static final Map<Long, Posting> postings = new HashMap<>();
+    private static final PhoneticNameIndex<Patient> phonetic = new PhoneticNameIndex<>();
+
+    /**
+     * Lista de documentos de um trigrama, em ordem crescente
+     */
+    private static class Posting {
+        int[] ids = new int[4];
+        int size = 0;
+
+        void add(int id) {
+            if (size == ids.length) {
+                ids = Arrays.copyOf(ids, size << 1);
+            }
+            ids[size++] = id;
+        }
+    }
+
+    /**
+     * Reconstrói o índice a partir da lista completa de pacientes
+     *
+     * @param patients Lista de pacientes
+     */
+    static synchronized void rebuild(List<Patient> patients) {
+        int capacity = Math.max(256, patients.size() + patients.size() / 2);
+        docs = new Patient[capacity];
+        normalizedNames = new String[capacity];
+        docCount = 0;
+        removedCount = 0;
+        docByCpf.clear();
+        postings.clear();
+        phonetic.clear();
+
+        for (Patient patient : patients) {
+            add(patient);
+        }
+    }
+
+    /**
+     * Indexa o nome de um paciente (substituindo o paciente anterior com o mesmo CPF)
+     *
+     * @param patient Paciente a indexar
+     */
+    static synchronized void add(Patient patient) {
+        long cpf = PatientIndex.pack(patient.getCpf());
+        if (cpf < 0) return;
+        remove(patient.getCpf());
+
+        if (docCount == docs.length) {
+            docs = Arrays.copyOf(docs, docCount << 1);
+            normalizedNames = Arrays.copyOf(normalizedNames, docCount << 1);
+        }
+
+        int id = docCount++;
+        String name = normalize(patient.getName());
+        docs[id] = patient;
+        normalizedNames[id] = name;
+        docByCpf.put(cpf, id);
+        phonetic.put(patient.getCpf(), patient.getName(), patient);
+
+        long previous = -1;
+        for (long trigram : trigramsOf(name)) {
+            if (trigram == previous) continue;
+            postings.computeIfAbsent(trigram, key -> new Posting()).add(id);
+            previous = trigram;
+        }
+    }
+
+    /**
+     * Retira um paciente do índice
+     *
+     * @param cpf CPF do paciente
+     */
+    static synchronized void remove(String cpf) {
+        Integer id = docByCpf.remove(PatientIndex.pack(cpf));
+        if (id == null) return;
+        phonetic.remove(cpf);
+
+        docs[id] = null;
+        normalizedNames[id] = null;
+        removedCount++;
+
+        // Muitas posições mortas nas listas: reconstruir para manter as buscas rápidas
+        if (removedCount > 64 && removedCount * 2 > docCount) {
+            List<Patient> alive = new ArrayList<>();
+            for (int i = 0; i < docCount; i++) {
+                if (docs[i] != null) alive.add(docs[i]);
+            }
+            rebuild(alive);
+        }
+    }
+
+    /**
+     * Busca pacientes cujo nome contém o trecho informado (sem diferenciar maiúsculas nem acentos)
+     * e ordena pela qualidade da correspondência: nome igual, início do nome,
+     * início de uma palavra e, por fim, qualquer posição; empates pelo nome mais curto.
+     *
+     * @param query Trecho do nome
+     * @param limit Quantidade máxima de resultados
+     * @return Melhores pacientes encontrados, do mais relevante para o menos relevante
+     */
+    public static synchronized List<Patient> search(String query, int limit) {
+        String needle = normalize(query);
+        List<Patient> result = new ArrayList<>();
+        if (needle.isEmpty() || limit <= 0) return result;
+
+        int[] candidates;
+        int candidateCount;
+        if (needle.length() < 3) {
+            // Trecho curto demais para trigramas: todos os documentos são candidatos
+            candidates = null;
+            candidateCount = docCount;
+        } else {
+            candidates = intersect(needle);
+            candidateCount = candidates.length;
+        }
+
+        // Seleção dos K melhores com um heap cujo topo é o pior dos escolhidos
+        Comparator<Integer> byRelevance = Comparator.<Integer>comparingInt(id -> score(normalizedNames[id], needle))
+                .thenComparingInt(id -> normalizedNames[id].length())
+                .thenComparing(id -> normalizedNames[id])
+                .thenComparingInt(id -> id);
+        PriorityQueue<Integer> best = new PriorityQueue<>(limit + 1, byRelevance.reversed());
+
+        for (int i = 0; i < candidateCount; i++) {
+            int id = candidates == null ? i : candidates[i];
+            String name = normalizedNames[id];
+            if (name == null || !name.contains(needle)) continue;
+
+            best.add(id);
+            if (best.size() > limit) {
+                best.poll();
+            }
+        }
+
+        List<Integer> ordered = new ArrayList<>(best);
+        ordered.sort(byRelevance);
+        for (int id : ordered) {
+            result.add(docs[id]);
+        }
+        return result;
+    }
+
+    /**
+     * Busca pacientes pela pronúncia aproximada de cada palavra digitada
+     * ("Tiago Souza" encontra "Thiago Sousa")
+     *
+     * @param query Nome ou parte do nome
+     * @param limit Quantidade máxima de resultados
+     * @return Pacientes encontrados, em ordem alfabética
+     */
+    public static List<Patient> searchPhonetic(String query, int limit) {
+        return phonetic.find(query, limit);
+    }
+
+    /**
+     * Documentos que contêm todos os trigramas do trecho
+     */
+    private static int[] intersect(String needle) {
+        long[] trigrams = trigramsOf(needle);
+        Posting[] lists = new Posting[trigrams.length];
+        int listCount = 0;
+
+        long previous = -1;
+        for (long trigram : trigrams) {
+            if (trigram == previous) continue;
+            previous = trigram;
+
+            Posting posting = postings.get(trigram);
+            if (posting == null) return EMPTY;
+            lists[listCount++] = posting;
+        }
+
+        Arrays.sort(lists, 0, listCount, Comparator.comparingInt(posting -> posting.size));
+
+        int[] current = Arrays.copyOf(lists[0].ids, lists[0].size);
+        int currentSize = current.length;
+        for (int l = 1; l < listCount && currentSize > 0; l++) {
+            Posting other = lists[l];
+            int kept = 0;
+            int from = 0;
+            for (int i = 0; i < currentSize; i++) {
+                int found = Arrays.binarySearch(other.ids, from, other.size, current[i]);
+                if (found >= 0) {
+                    current[kept++] = current[i];
+                    from = found + 1;
+                } else {
+                    from = -found - 1;
+                }
+            }
+            currentSize = kept;
+        }
+        return Arrays.copyOf(current, currentSize);
+    }
+
+    /**
+     * Qualidade da correspondência (menor é melhor)
+     */
+    private static int score(String name, String needle) {
+        if (name.equals(needle)) return 0;
+        if (name.startsWith(needle)) return 1;
+        if (name.contains(" " + needle)) return 2;
+        return 3;
+    }
+
+    /**
+     * Trigramas do texto, ordenados (repetições ficam lado a lado)
+     */
+    private static long[] trigramsOf(String text) {
+        if (text.length() < 3) return new long[0];
+
+        long[] trigrams = new long[text.length() - 2];
+        for (int i = 0; i < trigrams.length; i++) {
+            trigrams[i] = ((long) text.charAt(i) << 32) | ((long) text.charAt(i + 1) << 16) | text.charAt(i + 2);
+        }
+        Arrays.sort(trigrams);
+        return trigrams;
+    }
+
+    static String normalize(String name) {
+        return PhoneticNameIndex.fold(name);
+    }
+}
@@ -2,13 +2,10 @@ import java.time.LocalDate;
 import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
-import java.util.ArrayList;
-import java.util.Comparator;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.io.PrintWriter;
 
 /**
  * Classe responsável pela interface com o usuário para a visão do paciente.
@@ -17,18 +14,19 @@ import java.io.PrintWriter;
  */
 public class PatientView {
 
-    private static final String APPOINTMENT_CSV = "appointments.csv";
-    private static final String DOCTOR_CSV = "doctors_clean.csv";
+    /** Quantidade máxima de pacientes listados na busca por nome (propriedade {@code patients.searchLimit}) */
+    private static final int SEARCH_LIMIT = Integer.getInteger("patients.searchLimit", 20);
 
 
     /**
      * Ponto de entrada principal para a interface do paciente
      *
      * @param patients Lista de pacientes cadastrados no sistema
+     * @param appointments Lista de consultas em memória (compartilhada com o Main)
      * @param search Flag para controlar o loop do menu
      * @param scanner Scanner para leitura de entrada do usuário
      */
-    public static void checkOptions(List<Patient> patients, boolean search, Scanner scanner) {
+    public static void checkOptions(List<Patient> patients, List<Appointment> appointments, boolean search, Scanner scanner) {
         while (search) {
             try {
                 // Solicitar CPF ao paciente
@@ -55,17 +53,13 @@ public class PatientView {
                 // Dar boas-vindas ao paciente e mostrar o menu principal
                 System.out.println("\nBem-vindo(a), " + patient.getName() + "!");
 
-                // Carregar consultas do paciente
-                List<Appointment> allAppointments = Appointment.loadFromCSV(APPOINTMENT_CSV);
-                List<Appointment> patientAppointments = Appointment.filterByPatient(allAppointments, patient.getCpf());
-
-                // Atualizar a lista de consultas do paciente
-                patient.getAppointmentList().clear();
-                for (Appointment app : patientAppointments) {
-                    patient.addAppointment(app);
+                // Consultas já estão em memória; o arquivo só é relido se outro processo o alterou
+                if (AppointmentStore.refreshIfChanged(appointments)) {
+                    Main.associateAppointmentsToPatients(patients, appointments);
                 }
 
-                patientMenu(patient, allAppointments, scanner);
+                // A lista de consultas do paciente indexado já está em dia (associação e PatientIndex.attach)
+                patientMenu(PatientIndex.get(patient.getCpf()), appointments, scanner);
                 search = false;
 
             } catch (Exception e) {
@@ -88,6 +82,7 @@ public class PatientView {
 
         while (continueMenu) {
             try {
+                DataWatcher.sync();
                 System.out.println("\n===== MENU DO PACIENTE =====");
                 System.out.println("1 - Agendar nova consulta");
                 System.out.println("2 - Ver consultas agendadas (futuras)");
@@ -147,32 +142,27 @@ public class PatientView {
      * @param scanner Scanner para leitura de entrada do usuário
      */
     private static void viewAllPatientDoctors(Patient patient, List<Appointment> allAppointments, Scanner scanner) {
-        // Lista para armazenar os CRMs únicos dos médicos
-        List<String> doctorCRMs = new ArrayList<>();
-
-        // Extrair CRMs únicos de todas as consultas do paciente
-        for (Appointment app : patient.getAppointmentList()) {
-            String crm = app.getDoctorCRM();
-            if (!doctorCRMs.contains(crm)) {
-                doctorCRMs.add(crm);
-            }
-        }
+        // Médicos do paciente direto do índice de relações (já sem duplicatas)
+        AppointmentStore.completeDue();
+        List<DoctorPatientIndex.Relationship> doctors = DoctorPatientIndex.doctorsOf(patient.getCpf());
 
-        if (doctorCRMs.isEmpty()) {
+        if (doctors.isEmpty()) {
             System.out.println("Você ainda não tem nenhuma consulta com médicos.");
             return;
         }
 
-        System.out.println("\nMédicos que você já consultou ou tem consulta agendada:");
+        TableRenderer table = new TableRenderer("Nº", "Médico", "CRM", "Realizadas", "Última consulta")
+                .alignRight(0).alignRight(3);
+        table.line("\nMédicos que você já consultou ou tem consulta agendada:");
 
-        // Carregar lista de médicos para buscar os nomes
-        List<Doctor> doctors = Doctor.loadFromCSV(DOCTOR_CSV);
-
-        for (int i = 0; i < doctorCRMs.size(); i++) {
-            String crm = doctorCRMs.get(i);
-            String doctorName = DoctorView.getDoctorName(doctors, crm);
-            System.out.println((i + 1) + " - " + doctorName + " (CRM: " + crm + ")");
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy");
+        for (int i = 0; i < doctors.size(); i++) {
+            DoctorPatientIndex.Relationship relationship = doctors.get(i);
+            String crm = relationship.getDoctorCRM();
+            String lastVisit = relationship.getVisitCount() == 0 ? "-" : relationship.getLastVisit().format(formatter);
+            table.row(i + 1, DoctorView.getDoctorName(crm), crm, relationship.getVisitCount(), lastVisit);
         }
+        table.flush();
     }
 
     /**
@@ -183,68 +173,49 @@ public class PatientView {
      * @param scanner Scanner para leitura de entrada do usuário
      */
     private static void viewPatientAppointmentsWithDoctor(Patient patient, List<Appointment> allAppointments, Scanner scanner) {
-        // Lista para armazenar os CRMs únicos dos médicos
-        List<String> doctorCRMs = new ArrayList<>();
-
-        // Extrair CRMs únicos de todas as consultas do paciente
-        for (Appointment app : patient.getAppointmentList()) {
-            String crm = app.getDoctorCRM();
-            if (!doctorCRMs.contains(crm)) {
-                doctorCRMs.add(crm);
-            }
-        }
+        // Médicos do paciente direto do índice de relações (já sem duplicatas)
+        AppointmentStore.completeDue();
+        List<DoctorPatientIndex.Relationship> doctors = DoctorPatientIndex.doctorsOf(patient.getCpf());
 
-        if (doctorCRMs.isEmpty()) {
+        if (doctors.isEmpty()) {
             System.out.println("Você ainda não tem nenhuma consulta com médicos.");
             return;
         }
 
-        System.out.println("\nSelecione o médico para ver as consultas realizadas:");
-
-        // Carregar lista de médicos para buscar os nomes
-        List<Doctor> doctors = Doctor.loadFromCSV(DOCTOR_CSV);
-
-        for (int i = 0; i < doctorCRMs.size(); i++) {
-            String crm = doctorCRMs.get(i);
-            String doctorName = DoctorView.getDoctorName(doctors, crm);
-            System.out.println((i + 1) + " - " + doctorName + " (CRM: " + crm + ")");
+        TableRenderer table = new TableRenderer("Nº", "Médico", "CRM").alignRight(0);
+        table.line("\nSelecione o médico para ver as consultas realizadas:");
+        for (int i = 0; i < doctors.size(); i++) {
+            String crm = doctors.get(i).getDoctorCRM();
+            table.row(i + 1, DoctorView.getDoctorName(crm), crm);
         }
+        table.flush();
 
         System.out.print("\nDigite o número do médico (0 para voltar): ");
         int selection = Integer.parseInt(scanner.nextLine());
 
-        if (selection <= 0 || selection > doctorCRMs.size()) {
+        if (selection <= 0 || selection > doctors.size()) {
             return;
         }
 
-        String selectedCRM = doctorCRMs.get(selection - 1);
-
-        // Filtrar apenas consultas realizadas com o médico selecionado
-        List<Appointment> pastAppointmentsWithDoctor = new ArrayList<>();
-        for (Appointment app : patient.getAppointmentList()) {
-            if (app.getDoctorCRM().equals(selectedCRM) &&
-                    (app.getStatus() == AppointmentStatus.COMPLETED ||
-                            (app.hasOccurred() && app.getStatus() != AppointmentStatus.CANCELLED))) {
-
-                pastAppointmentsWithDoctor.add(app);
-            }
-        }
-
-        if (pastAppointmentsWithDoctor.isEmpty()) {
+        DoctorPatientIndex.Relationship selected = doctors.get(selection - 1);
+        String selectedCRM = selected.getDoctorCRM();
+        if (selected.getVisitCount() == 0) {
             System.out.println("Você não tem consultas realizadas com este médico.");
             return;
         }
 
-        // Ordenar por data/hora (mais recente primeiro)
-        pastAppointmentsWithDoctor.sort(Comparator.comparing(Appointment::getDate)
-                .thenComparing(Appointment::getTime).reversed());
-
-        String doctorName = DoctorView.getDoctorName(doctors, selectedCRM);
-        System.out.println("\nConsultas realizadas com " + doctorName + ":");
+        // Consultas realizadas com o médico selecionado, mais recentes primeiro (inclusive as arquivadas);
+        // os meses arquivados são lidos conforme as páginas avançam
+        PageCursor<Appointment> cursor = PageCursor.over(AppointmentStore.completedHistory(
+                patient.getAppointmentList(), selectedCRM, patient.getCpf(), null, null), 10);
 
-        for (Appointment app : pastAppointmentsWithDoctor) {
-            System.out.println("- " + app.getFormattedDateTime());
+        if (cursor.current().isEmpty()) {
+            System.out.println("Você não tem consultas realizadas com este médico.");
+            return;
         }
+
+        System.out.println("\nConsultas realizadas com " + DoctorView.getDoctorName(selectedCRM) + ":");
+        UIUtils.paginate(cursor, appointment -> "- " + appointment.getFormattedDateTime(), scanner);
     }
 
     /**
@@ -255,12 +226,7 @@ public class PatientView {
      * @return Paciente encontrado ou null se não encontrado
      */
     public static Patient findPatientByCPF(List<Patient> allPatients, String cpf) {
-        for (Patient p : allPatients) {
-            if (p.getCpf().equals(cpf)) {
-                return p;
-            }
-        }
-        return null;
+        return PatientIndex.get(cpf);
     }
 
     /**
@@ -272,13 +238,12 @@ public class PatientView {
      */
     public static Patient findPatientByName(List<Patient> allPatients, Scanner scanner) {
         System.out.print("Digite o nome do paciente (ou parte do nome): ");
-        String searchName = scanner.nextLine().trim().toLowerCase();
+        String searchName = scanner.nextLine().trim();
 
-        List<Patient> matches = new ArrayList<>();
-        for (Patient p : allPatients) {
-            if (p.getName().toLowerCase().contains(searchName)) {
-                matches.add(p);
-            }
+        List<Patient> matches = PatientNameIndex.search(searchName, SEARCH_LIMIT);
+        if (matches.isEmpty()) {
+            // Nenhum nome contém o texto: tentar grafias com pronúncia parecida
+            matches = PatientNameIndex.searchPhonetic(searchName, SEARCH_LIMIT);
         }
 
         if (matches.isEmpty()) {
@@ -291,6 +256,9 @@ public class PatientView {
             Patient p = matches.get(i);
             System.out.println((i + 1) + " - " + p.getName() + " (CPF: " + UIUtils.formatCPF(p.getCpf()) + ")");
         }
+        if (matches.size() == SEARCH_LIMIT) {
+            System.out.println("Mostrando os " + SEARCH_LIMIT + " resultados mais próximos. Refine a busca para ver outros.");
+        }
 
         System.out.print("\nDigite o número do paciente (0 para voltar): ");
         try {
@@ -387,17 +355,15 @@ public class PatientView {
         }
 
         // Verificar se o paciente já existe
-        List<Patient> existingPatients = Patient.loadFromCSV("patients.csv");
-        for (Patient p : existingPatients) {
-            if (p.getCpf().equals(cpf)) {
-                System.out.println("Já existe um paciente com este CPF: " + p.getName());
-                return p;
-            }
+        Patient existing = PatientIndex.get(cpf);
+        if (existing != null) {
+            System.out.println("Já existe um paciente com este CPF: " + existing.getName());
+            return existing;
         }
 
         // Salvar no arquivo CSV
-        try (PrintWriter writer = new PrintWriter(new FileWriter("patients.csv", true))) {
-            writer.println(name + "," + cpf);
+        try {
+            GroupCommitWriter.forFile("patients.csv").appendAndWait(Collections.singletonList(name + "," + cpf));
         } catch (IOException error) {
             System.out.println("Erro ao salvar no arquivo CSV: " + error.getMessage());
             return null;
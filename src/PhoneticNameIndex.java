@@ -0,0 +1,235 @@
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Índice de nomes pela pronúncia aproximada em português.
+ * Cada palavra do nome é reduzida a uma chave fonética (sem acentos, sem diferenciar
+ * maiúsculas e unificando grafias como "Souza"/"Sousa", "Thiago"/"Tiago",
+ * "Felipe"/"Filipe", "Mattos"/"Matos"), e a chave aponta para os registros que têm
+ * essa palavra. Uma busca aproximada vira uma consulta direta ao mapa para cada
+ * palavra digitada, sem percorrer todos os registros.
+ *
+ * @param <T> Tipo do registro indexado (paciente, médico)
+ */
+public class PhoneticNameIndex<T> {
+
+    private final Map<String, Set<String>> idsByKey = new HashMap<>();
+    private final Map<String, String[]> keysById = new HashMap<>();
+    private final Map<String, T> records = new LinkedHashMap<>();
+    private final Map<String, String> foldedNames = new HashMap<>();
+
+    /**
+     * Remove acentos e converte para minúsculas ("João" -> "joao", "Conceição" -> "conceicao")
+     *
+     * @param text Texto original
+     * @return Texto normalizado (sem espaços nas pontas)
+     */
+    public static String fold(String text) {
+        if (text == null) return "";
+
+        String decomposed = Normalizer.normalize(text.trim(), Normalizer.Form.NFD);
+        StringBuilder folded = new StringBuilder(decomposed.length());
+        for (int i = 0; i < decomposed.length(); i++) {
+            char c = decomposed.charAt(i);
+            if (Character.getType(c) == Character.NON_SPACING_MARK) continue;
+            folded.append(Character.toLowerCase(c));
+        }
+        return folded.toString();
+    }
+
+    /**
+     * Chaves fonéticas de cada palavra de um nome
+     *
+     * @param name Nome
+     * @return Uma chave por palavra, na ordem do nome (palavras sem letras são ignoradas)
+     */
+    public static String[] phoneticKeys(String name) {
+        // O "ç" precisa ser tratado antes de perder a cedilha
+        String folded = fold(name == null ? null : name.replace('ç', 's').replace('Ç', 's'));
+
+        List<String> keys = new ArrayList<>();
+        for (String word : folded.split("[^a-z]+")) {
+            if (!word.isEmpty()) {
+                keys.add(phoneticKey(word));
+            }
+        }
+        return keys.toArray(new String[0]);
+    }
+
+    /**
+     * Chave fonética de uma palavra já normalizada (somente letras de a a z)
+     */
+    static String phoneticKey(String word) {
+        StringBuilder key = new StringBuilder(word.length());
+        int length = word.length();
+
+        for (int i = 0; i < length; i++) {
+            char c = word.charAt(i);
+            char next = i + 1 < length ? word.charAt(i + 1) : 0;
+            char mapped;
+
+            switch (c) {
+                case 'p':
+                    if (next == 'h') { mapped = 'f'; i++; } else mapped = 'p';
+                    break;
+                case 'l':
+                case 'n':
+                    // "lh" e "nh" ficam como "l" e "n"
+                    if (next == 'h') i++;
+                    mapped = c;
+                    break;
+                case 'm':
+                    // "m" nasal (antes de consoante ou no fim) soa como "n"
+                    mapped = next == 0 || !isVowel(next) ? 'n' : 'm';
+                    break;
+                case 'c':
+                    if (next == 'h') { mapped = 'x'; i++; }
+                    else if (next == 'e' || next == 'i' || next == 'y') mapped = 's';
+                    else mapped = 'k';
+                    break;
+                case 's':
+                    if (next == 'c' && i + 2 < length && word.charAt(i + 1) == 'c' && word.charAt(i + 2) == 'h') { mapped = 'x'; i += 2; }
+                    else if (next == 'h') { mapped = 'x'; i++; }
+                    else if (next == 'c' && i + 2 < length && (word.charAt(i + 2) == 'e' || word.charAt(i + 2) == 'i')) { mapped = 's'; i++; }
+                    else mapped = 's';
+                    break;
+                case 'q':
+                    if (next == 'u') i++;
+                    mapped = 'k';
+                    break;
+                case 'g':
+                    if (next == 'u' && i + 2 < length && (word.charAt(i + 2) == 'e' || word.charAt(i + 2) == 'i')) { mapped = 'g'; i++; }
+                    else if (next == 'e' || next == 'i' || next == 'y') mapped = 'j';
+                    else mapped = 'g';
+                    break;
+                case 'z':
+                    mapped = 's';
+                    break;
+                case 'y':
+                    mapped = 'i';
+                    break;
+                case 'w':
+                    mapped = 'v';
+                    break;
+                case 'e':
+                    mapped = 'i';
+                    break;
+                case 'o':
+                    mapped = 'u';
+                    break;
+                case 'h':
+                    continue; // "h" isolado é mudo
+                default:
+                    mapped = c;
+            }
+
+            // Letras repetidas soam como uma só ("rr", "ss", "tt")
+            if (key.length() == 0 || key.charAt(key.length() - 1) != mapped) {
+                key.append(mapped);
+            }
+        }
+        return key.toString();
+    }
+
+    private static boolean isVowel(char c) {
+        return c == 'a' || c == 'e' || c == 'i' || c == 'o' || c == 'u' || c == 'y';
+    }
+
+    /**
+     * Descarta todos os registros
+     */
+    public synchronized void clear() {
+        idsByKey.clear();
+        keysById.clear();
+        records.clear();
+        foldedNames.clear();
+    }
+
+    /**
+     * Indexa (ou reindexa) um registro
+     *
+     * @param id Identificador único do registro (CPF, CRM)
+     * @param name Nome a indexar
+     * @param record Registro
+     */
+    public synchronized void put(String id, String name, T record) {
+        remove(id);
+
+        String[] keys = phoneticKeys(name);
+        keysById.put(id, keys);
+        records.put(id, record);
+        foldedNames.put(id, fold(name));
+        for (String key : keys) {
+            idsByKey.computeIfAbsent(key, k -> new HashSet<>()).add(id);
+        }
+    }
+
+    /**
+     * Retira um registro do índice
+     *
+     * @param id Identificador do registro
+     */
+    public synchronized void remove(String id) {
+        String[] keys = keysById.remove(id);
+        if (keys == null) return;
+
+        records.remove(id);
+        foldedNames.remove(id);
+        for (String key : keys) {
+            Set<String> ids = idsByKey.get(key);
+            if (ids != null) {
+                ids.remove(id);
+                if (ids.isEmpty()) idsByKey.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Busca os registros cujo nome tem, para cada palavra digitada, uma palavra
+     * com a mesma pronúncia aproximada
+     *
+     * @param query Nome ou parte do nome (palavras inteiras, grafia livre)
+     * @param limit Quantidade máxima de resultados
+     * @return Registros encontrados, em ordem alfabética do nome
+     */
+    public synchronized List<T> find(String query, int limit) {
+        List<T> result = new ArrayList<>();
+        String[] keys = phoneticKeys(query);
+        if (keys.length == 0 || limit <= 0) return result;
+
+        // Começar pela palavra mais seletiva e cruzar com as demais
+        Set<String> smallest = null;
+        for (String key : keys) {
+            Set<String> ids = idsByKey.get(key);
+            if (ids == null) return result;
+            if (smallest == null || ids.size() < smallest.size()) smallest = ids;
+        }
+
+        List<String> matches = new ArrayList<>();
+        for (String id : smallest) {
+            boolean all = true;
+            for (String key : keys) {
+                if (!idsByKey.get(key).contains(id)) {
+                    all = false;
+                    break;
+                }
+            }
+            if (all) matches.add(id);
+        }
+
+        matches.sort((a, b) -> {
+            int byName = foldedNames.get(a).compareTo(foldedNames.get(b));
+            return byName != 0 ? byName : a.compareTo(b);
+        });
+        for (int i = 0; i < matches.size() && i < limit; i++) {
+            result.add(records.get(matches.get(i)));
+        }
+        return result;
+    }
+}
@@ -0,0 +1,136 @@
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Fila de prioridade (heap mínimo) com o horário das consultas pendentes.
+ * Permite descobrir, sem percorrer todas as consultas, quais já passaram do horário
+ * e devem ser marcadas como realizadas. O horário é guardado em minutos desde
+ * 1970-01-01 em um array primitivo, ao lado da consulta correspondente.
+ */
+public class StatusTransitionScheduler {
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static long[] slots = new long[INITIAL_CAPACITY];
+    private static Appointment[] entries = new Appointment[INITIAL_CAPACITY];
+    private static int size = 0;
+
+    /**
+     * Reconstrói a fila a partir da lista completa de consultas
+     *
+     * @param appointments Lista de consultas
+     */
+    public static synchronized void rebuild(List<Appointment> appointments) {
+        int capacity = Math.max(INITIAL_CAPACITY, appointments.size());
+        slots = new long[capacity];
+        entries = new Appointment[capacity];
+        size = 0;
+
+        for (Appointment appointment : appointments) {
+            if (appointment.isPending()) {
+                slots[size] = appointment.slotMinute();
+                entries[size] = appointment;
+                size++;
+            }
+        }
+
+        // Montagem do heap de baixo para cima, O(n)
+        for (int i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i);
+        }
+    }
+
+    /**
+     * Passa a acompanhar uma consulta pendente (nova ou remarcada)
+     *
+     * @param appointment Consulta a acompanhar
+     */
+    public static synchronized void track(Appointment appointment) {
+        if (!appointment.isPending()) return;
+
+        if (size == slots.length) {
+            slots = Arrays.copyOf(slots, size << 1);
+            entries = Arrays.copyOf(entries, size << 1);
+        }
+
+        slots[size] = appointment.slotMinute();
+        entries[size] = appointment;
+        siftUp(size++);
+    }
+
+    /**
+     * Retira da fila as consultas pendentes cujo horário já passou.
+     * Entradas de consultas canceladas ou remarcadas depois de entrarem na fila são descartadas.
+     *
+     * @param now Instante atual
+     * @return Consultas vencidas, da mais antiga para a mais recente
+     */
+    public static synchronized List<Appointment> pollDue(LocalDateTime now) {
+        List<Appointment> due = new ArrayList<>();
+
+        long nowMinute = now.toLocalDate().toEpochDay() * 1440 + now.getHour() * 60 + now.getMinute();
+        boolean pastMinuteStart = now.getSecond() > 0 || now.getNano() > 0;
+
+        while (size > 0 && (slots[0] < nowMinute || (slots[0] == nowMinute && pastMinuteStart))) {
+            long slot = slots[0];
+            Appointment appointment = entries[0];
+            removeTop();
+
+            if (appointment.isPending() && appointment.slotMinute() == slot) {
+                due.add(appointment);
+            }
+        }
+        return due;
+    }
+
+    /**
+     * @return Quantidade de entradas na fila (incluindo as já descartáveis)
+     */
+    public static synchronized int size() {
+        return size;
+    }
+
+    private static void removeTop() {
+        size--;
+        slots[0] = slots[size];
+        entries[0] = entries[size];
+        entries[size] = null;
+        if (size > 0) {
+            siftDown(0);
+        }
+    }
+
+    private static void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (slots[parent] <= slots[index]) break;
+            swap(parent, index);
+            index = parent;
+        }
+    }
+
+    private static void siftDown(int index) {
+        while (true) {
+            int smallest = index;
+            int left = 2 * index + 1;
+            int right = left + 1;
+            if (left < size && slots[left] < slots[smallest]) smallest = left;
+            if (right < size && slots[right] < slots[smallest]) smallest = right;
+            if (smallest == index) return;
+            swap(index, smallest);
+            index = smallest;
+        }
+    }
+
+    private static void swap(int a, int b) {
+        long slot = slots[a];
+        slots[a] = slots[b];
+        slots[b] = slot;
+
+        Appointment entry = entries[a];
+        entries[a] = entries[b];
+        entries[b] = entry;
+    }
+}
@@ -0,0 +1,174 @@
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Monta listagens do terminal em memória e as envia de uma só vez.
+ * As linhas de uma página são acumuladas (tabelas com colunas alinhadas ou linhas livres)
+ * e, no {@link #flush()}, formatadas em um único StringBuilder reaproveitado, codificadas
+ * em um buffer de bytes também reaproveitado e gravadas no System.out com uma única escrita,
+ * em vez de um println sincronizado (e com flush) por linha.
+ */
+public class TableRenderer {
+
+    /** Linhas acumuladas além disso são enviadas sem esperar o flush (listagens sem paginação) */
+    private static final int MAX_PENDING_ROWS = 512;
+    private static final String GAP = "  ";
+
+    // Buffers compartilhados entre as listagens; usados somente dentro de write()
+    private static final StringBuilder text = new StringBuilder(8192);
+    private static ByteBuffer bytes = ByteBuffer.allocate(16384);
+    private static final CharsetEncoder encoder = Charset.forName(
+            System.getProperty("sun.stdout.encoding", Charset.defaultCharset().name())).newEncoder()
+            .onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+    private final String[] headers;
+    private final boolean[] rightAligned;
+    private final int[] widths;
+    private final List<Object> pending = new ArrayList<>(); // String (linha livre) ou String[] (linha da tabela)
+    private boolean headerPending;
+
+    /**
+     * @param headers Títulos das colunas (nenhum para usar apenas linhas livres)
+     */
+    public TableRenderer(String... headers) {
+        this.headers = headers;
+        this.rightAligned = new boolean[headers.length];
+        this.widths = new int[headers.length];
+        for (int i = 0; i < headers.length; i++) {
+            widths[i] = headers[i].length();
+        }
+        this.headerPending = headers.length > 0;
+    }
+
+    /**
+     * Alinha os valores de uma coluna à direita (números)
+     *
+     * @param column Índice da coluna (começando em 0)
+     */
+    public TableRenderer alignRight(int column) {
+        rightAligned[column] = true;
+        return this;
+    }
+
+    /**
+     * Acrescenta uma linha à tabela; o título das colunas sai antes da primeira linha
+     *
+     * @param cells Um valor por coluna
+     */
+    public TableRenderer row(Object... cells) {
+        String[] values = new String[headers.length];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = i < cells.length ? String.valueOf(cells[i]) : "";
+            widths[i] = Math.max(widths[i], values[i].length());
+        }
+        if (headerPending) {
+            pending.add(headers);
+            pending.add(null); // separador
+            headerPending = false;
+        }
+        pending.add(values);
+        if (pending.size() >= MAX_PENDING_ROWS) flush();
+        return this;
+    }
+
+    /**
+     * Acrescenta uma linha livre, fora das colunas
+     *
+     * @param line Texto da linha
+     */
+    public TableRenderer line(String line) {
+        pending.add(line);
+        if (pending.size() >= MAX_PENDING_ROWS) flush();
+        return this;
+    }
+
+    /**
+     * Formata as linhas acumuladas e as envia ao terminal em uma única escrita.
+     * A largura de cada coluna nunca diminui entre envios da mesma tabela.
+     */
+    public void flush() {
+        if (pending.isEmpty()) return;
+
+        synchronized (TableRenderer.class) {
+            text.setLength(0);
+            for (Object entry : pending) {
+                if (entry instanceof String[]) {
+                    appendRow((String[]) entry);
+                } else if (entry == null) {
+                    appendSeparator();
+                } else {
+                    text.append((String) entry);
+                }
+                text.append(System.lineSeparator());
+            }
+            write();
+        }
+        pending.clear();
+    }
+
+    private void appendRow(String[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) text.append(GAP);
+            int padding = widths[i] - values[i].length();
+            boolean last = i == values.length - 1;
+            if (rightAligned[i]) pad(padding);
+            text.append(values[i]);
+            if (!rightAligned[i] && !last) pad(padding);
+        }
+    }
+
+    private void appendSeparator() {
+        for (int i = 0; i < widths.length; i++) {
+            if (i > 0) text.append(GAP);
+            for (int j = 0; j < widths[i]; j++) text.append('-');
+        }
+    }
+
+    private static void pad(int count) {
+        for (int i = 0; i < count; i++) text.append(' ');
+    }
+
+    /**
+     * Codifica o texto montado no buffer de bytes e grava tudo de uma vez
+     */
+    private static void write() {
+        CharBuffer chars = CharBuffer.wrap(text);
+        encoder.reset();
+        bytes.clear();
+        CoderResult result = encoder.encode(chars, bytes, true);
+        while (result.isOverflow()) {
+            grow();
+            result = encoder.encode(chars, bytes, true);
+        }
+        while (encoder.flush(bytes).isOverflow()) {
+            grow();
+        }
+
+        // Pendências de print() anteriores já estão no System.out; a página entra logo depois
+        System.out.write(bytes.array(), 0, bytes.position());
+        System.out.flush();
+
+        // Uma listagem muito grande não deve manter buffers enormes vivos
+        if (text.capacity() > 1 << 20) {
+            text.setLength(0);
+            text.trimToSize();
+        }
+        if (bytes.capacity() > 1 << 20) {
+            bytes = ByteBuffer.allocate(16384);
+        }
+    }
+
+    private static void grow() {
+        ByteBuffer larger = ByteBuffer.allocate(bytes.capacity() << 1);
+        bytes.flip();
+        larger.put(bytes);
+        bytes = larger;
+    }
+}
@@ -1,5 +1,8 @@
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Scanner;
+import java.util.function.Function;
 
 /**
  * Classe utilitária para funções de interface com o usuário.
@@ -37,27 +40,55 @@ public class UIUtils {
             return;
         }
 
-        try {
-            int total = list.size();
-            int pages = (int) Math.ceil((double) total / pageSize);
-            int page = 0;
+        paginate(PageCursor.over(list, pageSize), String::valueOf, scanner);
+    }
 
-            while (page < pages) {
-                int start = page * pageSize;
-                int end = Math.min(start + pageSize, total);
+    /**
+     * Exibe os itens de um cursor página a página, formatando apenas os itens da página exibida.
+     * O usuário pode avançar (s), voltar (a), digitar o número de uma página ou sair (n).
+     *
+     * @param <T> Tipo dos itens
+     * @param cursor Cursor posicionado na primeira página
+     * @param formatter Converte um item na linha exibida
+     * @param scanner Scanner para leitura da entrada do usuário
+     */
+    public static <T> void paginate(PageCursor<T> cursor, Function<T, String> formatter, Scanner scanner) {
+        if (cursor.current().isEmpty()) {
+            System.out.println("Nenhum item para exibir.");
+            return;
+        }
 
-                System.out.println("\nPágina " + (page + 1) + "/" + pages);
-                for (int i = start; i < end; i++) {
-                    System.out.println(list.get(i));
+        try {
+            while (true) {
+                // A página inteira sai em uma única escrita
+                int pages = cursor.totalPages();
+                TableRenderer page = new TableRenderer();
+                page.line("\nPágina " + cursor.pageNumber() + (pages > 0 ? "/" + pages : ""));
+                for (T item : cursor.current()) {
+                    page.line(formatter.apply(item));
                 }
+                page.flush();
+
+                if (!cursor.hasNext() && !cursor.hasPrevious()) break;
 
-                if (page < pages - 1) { // Se não for a última página
-                    System.out.print("Deseja ver a próxima página? (s/n): ");
-                    String input = scanner.nextLine();
-                    if (!input.equalsIgnoreCase("s")) break;
+                if (cursor.hasNext() && cursor.hasPrevious()) {
+                    System.out.print("Próxima página (s), anterior (a), número da página ou sair (n): ");
+                } else if (cursor.hasNext()) {
+                    System.out.print("Deseja ver a próxima página? (s/n ou número da página): ");
+                } else {
+                    System.out.print("Última página. Voltar para a anterior? (a/n ou número da página): ");
                 }
 
-                page++;
+                String input = scanner.nextLine().trim();
+                if (input.equalsIgnoreCase("s") && cursor.hasNext()) {
+                    cursor.next();
+                } else if (input.equalsIgnoreCase("a") && cursor.hasPrevious()) {
+                    cursor.previous();
+                } else if (input.matches("[1-9]\\d{0,8}")) {
+                    cursor.goTo(Integer.parseInt(input));
+                } else {
+                    break;
+                }
             }
         } catch (Exception e) {
             System.err.println("Erro durante a paginação: " + e.getMessage());
@@ -66,5 +97,18 @@ public class UIUtils {
         }
     }
 
+    /**
+     * Exibe os próximos horários livres de um médico, como sugestão para o agendamento.
+     *
+     * @param crm CRM do médico
+     * @param count Quantidade de horários a exibir
+     */
+    public static void showNextFreeSlots(String crm, int count) {
+        DateTimeFormatter formatter = DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm");
 
+        System.out.println("Próximos horários livres:");
+        for (LocalDateTime slot : DoctorAvailability.nextFree(crm, AppointmentClock.now(), count)) {
+            System.out.println("- " + slot.format(formatter));
+        }
+    }
 }